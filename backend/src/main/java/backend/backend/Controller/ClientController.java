@@ -2,11 +2,20 @@ package backend.backend.Controller;
 
 
 import backend.backend.Entity.ClientEntity;
+import backend.backend.Service.AmortizationRow;
 import backend.backend.Service.ClientService;
+import backend.backend.Service.EvaluationInput;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -19,6 +28,9 @@ public class ClientController {
     @Autowired
     private ClientService clientService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @GetMapping("/{id}")
     public ClientEntity getClienteyId(@PathVariable Long id) {
         return clientService.getClientById(id);
@@ -68,8 +80,8 @@ public class ClientController {
             int result = clientService.simulateLoanAmount(amount, termYears, annualInterest);
             return ResponseEntity.ok(result);
 
-        } catch (NumberFormatException e) {
-            // Manejar la excepción si los parámetros no son válidos
+        } catch (IllegalArgumentException e) {
+            // Manejar la excepción si los parámetros no son válidos (incluye NumberFormatException y plazos de 0 años)
             return ResponseEntity.badRequest().body(null);
         }
     }
@@ -89,35 +101,99 @@ public class ClientController {
             int result = clientService.totalCostP6(amount, termYears, annualInterest, seguroDegrabacion, seguroIncendio, comision);
             return ResponseEntity.ok(result);
 
-        } catch (NumberFormatException e) {
-            // Manejar la excepción si los parámetros no son válidos
+        } catch (IllegalArgumentException e) {
+            // Manejar la excepción si los parámetros no son válidos (incluye NumberFormatException y plazos de 0 años)
             return ResponseEntity.badRequest().body(null);
         }
     }
 
-    @PostMapping("/P4")
-    public ResponseEntity<List<Boolean>> P4(@RequestBody Map<String, String> body) {
+    // Tabla de amortización mes a mes en formato NDJSON (una cuota por línea), se escribe a medida que se calcula
+    @PostMapping(value = "/schedule", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> schedule(@RequestBody Map<String, String> body) {
         try {
-            // Extraer parámetros del cuerpo de la solicitud
-            Long clientId = Long.parseLong(body.get("clientId"));
-
-            int type = Integer.parseInt(body.get("type"));
-            int loan = Integer.parseInt(body.get("loan"));
-            int debt = Integer.parseInt(body.get("debt"));
             int amount = Integer.parseInt(body.get("amount"));
-            int older = Integer.parseInt(body.get("older"));
             int termYears = Integer.parseInt(body.get("termYears"));
             double annualInterest = Double.parseDouble(body.get("annualInterest"));
+            double seguroDegrabacion = Double.parseDouble(body.getOrDefault("seguroDegrabacion", "0"));
+            double seguroIncendio = Double.parseDouble(body.getOrDefault("seguroIncendio", "0"));
+            double comision = Double.parseDouble(body.getOrDefault("comision", "0"));
+
+            Iterator<AmortizationRow> rows = clientService.amortizationSchedule(amount, termYears, annualInterest, seguroDegrabacion, seguroIncendio, comision);
+            StreamingResponseBody stream = outputStream -> {
+                // Sin el separador por defecto de jackson entre valores raiz (un espacio), cada linea empieza con el objeto
+                ObjectWriter writer = objectMapper.writer().withRootValueSeparator("");
+                JsonGenerator generator = writer.createGenerator(outputStream);
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                while (rows.hasNext()) {
+                    writer.writeValue(generator, rows.next());
+                    generator.writeRaw('\n');
+                }
+                generator.close();
+            };
+            return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(stream);
+        } catch (IllegalArgumentException e) {
+            // Manejar la excepción si los parámetros no son válidos (incluye NumberFormatException y plazos de 0 años)
+            return ResponseEntity.badRequest().body(null);
+        }
+    }
+
+    // Con ?trace=true o el header X-Evaluation-Trace: true devuelve {"results": [...], "totalMs", "steps": [...]}
+    // con las consultas y los valores de cada regla en vez de solo la lista de resultados
+    @PostMapping("/P4")
+    public ResponseEntity<?> P4(@RequestBody Map<String, String> body,
+                                @RequestParam(value = "trace", defaultValue = "false") boolean trace,
+                                @RequestHeader(value = "X-Evaluation-Trace", defaultValue = "false") boolean traceHeader) {
+        try {
+            // Extraer parámetros del cuerpo de la solicitud
+            EvaluationInput input = parseEvaluationInput(body);
+
+            if (trace || traceHeader) {
+                return ResponseEntity.ok(clientService.RcompleteTraced(input.getClientId(), input.getType(), input.getLoan(), input.getDebt(),
+                        input.getAmount(), input.getOlder(), input.getTermYears(), input.getAnnualInterest()));
+            }
 
             // Llamar al servicio con los parámetros
-            List<Boolean> result = clientService.Rcomplete(clientId, type, loan, debt, amount, older, termYears, annualInterest);
+            List<Boolean> result = clientService.Rcomplete(input.getClientId(), input.getType(), input.getLoan(), input.getDebt(),
+                    input.getAmount(), input.getOlder(), input.getTermYears(), input.getAnnualInterest());
             return ResponseEntity.ok(result);
-        } catch (NumberFormatException e) {
-            // Manejar la excepción si los parámetros no son válidos
+        } catch (IllegalArgumentException e) {
+            // Manejar la excepción si los parámetros no son válidos (incluye NumberFormatException y plazos de 0 años)
             return ResponseEntity.badRequest().body(null);
         }
     }
 
+    // Evalúa varias solicitudes en una sola llamada, los resultados vienen en el mismo orden que la entrada.
+    // Un lote con más de evaluation.batch.max-size solicitudes devuelve 400
+    @PostMapping("/P4/batch")
+    public ResponseEntity<List<List<Boolean>>> P4Batch(@RequestBody List<Map<String, String>> body) {
+        try {
+            List<EvaluationInput> inputs = new ArrayList<>();
+            for (Map<String, String> item : body) {
+                inputs.add(parseEvaluationInput(item));
+            }
+            return ResponseEntity.ok(clientService.RcompleteBatch(inputs));
+        } catch (IllegalArgumentException e) {
+            // Manejar la excepción si los parámetros no son válidos (incluye NumberFormatException y plazos de 0 años)
+            return ResponseEntity.badRequest().body(null);
+        }
+    }
+
+    private EvaluationInput parseEvaluationInput(Map<String, String> body) {
+        long clientId = Long.parseLong(body.get("clientId"));
+        int type = Integer.parseInt(body.get("type"));
+        int loan = Integer.parseInt(body.get("loan"));
+        int debt = Integer.parseInt(body.get("debt"));
+        int amount = Integer.parseInt(body.get("amount"));
+        int older = Integer.parseInt(body.get("older"));
+        int termYears = Integer.parseInt(body.get("termYears"));
+        // R1 calcula la cuota, que no existe para un plazo de 0 meses o menos
+        if (termYears <= 0) {
+            throw new IllegalArgumentException("termYears must be positive: " + termYears);
+        }
+        double annualInterest = Double.parseDouble(body.get("annualInterest"));
+        return new EvaluationInput(clientId, type, loan, debt, amount, older, termYears, annualInterest);
+    }
+
 
 
 }
\ No newline at end of file
@@ -4,12 +4,22 @@ package backend.backend.Controller;
 import backend.backend.Entity.ClientEntity;
 import backend.backend.Entity.HistoryCountEntity;
 
+import backend.backend.Service.HistoryCountIngestService;
 import backend.backend.Service.HistoryCountService;
+import backend.backend.Service.IngestReport;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -21,6 +31,9 @@ public class HistoryCountController {
     @Autowired
     private HistoryCountService historyCountService;
 
+    @Autowired
+    private HistoryCountIngestService historyCountIngestService;
+
     @PostMapping("/add")
     public HistoryCountEntity addHistoryCount(@RequestBody Map<String, String> body) {
         long clientid = Long.parseLong(body.get("clientid"));
@@ -42,6 +55,44 @@ public class HistoryCountController {
         return historyCountService.getHistoryCount(id);
     }
 
+    // Movimientos de un cliente del más nuevo al más antiguo, paginados por (fecha, id). Los headers
+    // X-Next-Before-Date y X-Next-Before-Id traen los valores para pedir la página siguiente. Los movimientos
+    // sin fecha van primero; si la página termina en uno de ellos solo se envía X-Next-Before-Id.
+    @GetMapping("/client/{clientId}")
+    public ResponseEntity<List<HistoryCountEntity>> getHistoryByClient(@PathVariable long clientId,
+                                                                       @RequestParam(required = false) String beforeDate,
+                                                                       @RequestParam(defaultValue = "0") long beforeId,
+                                                                       @RequestParam(defaultValue = "" + HistoryCountService.DEFAULT_PAGE_SIZE) int limit) {
+        Timestamp before;
+        try {
+            before = beforeDate == null ? null : Timestamp.valueOf(LocalDateTime.parse(beforeDate));
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+
+        List<HistoryCountEntity> history = historyCountService.getHistoryPage(clientId, before, beforeId, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!history.isEmpty() && history.size() >= HistoryCountService.pageSize(limit)) {
+            HistoryCountEntity last = history.get(history.size() - 1);
+            if (last.getChangeDate() != null) {
+                response.header("X-Next-Before-Date", last.getChangeDate().toLocalDateTime().toString());
+            }
+            response.header("X-Next-Before-Id", String.valueOf(last.getId()));
+        }
+        return response.body(history);
+    }
+
+    // Carga masiva de movimientos desde el export del core bancario, el cuerpo se lee como stream:
+    // application/x-ndjson con un objeto {"clientid", "change", "changeDate"} por linea, o text/csv con
+    // clientid,change,changeDate. Devuelve las filas insertadas, filas por segundo y los errores por linea.
+    @PostMapping(value = "/bulk", consumes = {"application/x-ndjson", "text/csv"})
+    public IngestReport bulk(HttpServletRequest request) throws IOException {
+        HistoryCountIngestService.Format format = MediaType.parseMediaType(request.getContentType()).isCompatibleWith(MediaType.parseMediaType("text/csv"))
+                ? HistoryCountIngestService.Format.CSV
+                : HistoryCountIngestService.Format.NDJSON;
+        return historyCountIngestService.ingest(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8), format);
+    }
+
 
 
 
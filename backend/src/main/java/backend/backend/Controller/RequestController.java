@@ -2,15 +2,24 @@ package backend.backend.Controller;
 
 
 import backend.backend.Entity.RequestEntity;
+import backend.backend.Repository.RequestSummary;
 import backend.backend.Service.RequestService;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.OptimisticLockException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -31,12 +40,9 @@ public class RequestController {
             @RequestParam("termYears") int termYears,
             @RequestParam("clientId") long clientId,
             @RequestParam("pdfFile") MultipartFile pdfFile) {
-        try {
-            // Convertir el archivo PDF a un arreglo de bytes
-            byte[] pdfData = pdfFile.getBytes();
-
-            // Crear la entidad de solicitud
-            RequestEntity request = requestService.createRequest(typeOfRequest, stage, Amount, termYears, clientId, pdfData);
+        try (InputStream pdfStream = pdfFile.getInputStream()) {
+            // El PDF se copia al almacén de documentos como stream, sin cargarlo completo en memoria
+            RequestEntity request = requestService.createRequest(typeOfRequest, stage, Amount, termYears, clientId, pdfStream);
 
             return new ResponseEntity<>(request, HttpStatus.CREATED);
         } catch (IOException e) {
@@ -49,14 +55,42 @@ public class RequestController {
           ) {
         long ClientId= Long.parseLong(body.get("Id"));
         int Stage= Integer.parseInt(body.get("Stage"));
+        String Version = body.get("Version");
 
         try {
-            // Llamar al servicio para actualizar el Stage
-            requestService.updateStage(ClientId, Stage);
+            // Llamar al servicio para actualizar el Stage, con control de versión si se envía
+            if (Version == null) {
+                requestService.updateStage(ClientId, Stage);
+            } else {
+                requestService.updateStage(ClientId, Stage, Integer.parseInt(Version));
+            }
             return ResponseEntity.ok("Stage updated successfully for Request ID: " + ClientId);
         } catch (EntityNotFoundException e) {
             // Manejar el caso donde la solicitud no se encuentra
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (OptimisticLockException e) {
+            // Otro usuario cambió la solicitud después de que el cliente la leyó
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+    // Mueve varias solicitudes al mismo Stage con un solo UPDATE: {"Ids": [1, 2, 3], "Stage": 2}
+    @PutMapping("/updateStage/bulk")
+    public ResponseEntity<Map<String, Integer>> updateStageBulk(@RequestBody Map<String, Object> body) {
+        try {
+            int Stage = Integer.parseInt(String.valueOf(body.get("Stage")));
+            List<Long> Ids = new ArrayList<>();
+            for (Object id : (List<?>) body.get("Ids")) {
+                Ids.add(Long.parseLong(String.valueOf(id)));
+            }
+
+            int updated = requestService.updateStage(Ids, Stage);
+            Map<String, Integer> result = new LinkedHashMap<>();
+            result.put("requested", Ids.size());
+            result.put("updated", updated);
+            return ResponseEntity.ok(result);
+        } catch (NumberFormatException | ClassCastException | NullPointerException e) {
+            return ResponseEntity.badRequest().body(null);
         }
     }
 
@@ -72,26 +106,81 @@ public class RequestController {
         }
     }
 
+    // Listados paginados por id: afterId es el último id de la página anterior y el header X-Next-After-Id trae
+    // el valor para pedir la siguiente
     @PostMapping("/getAll/ClientId")
-    public ResponseEntity<List<RequestEntity>> getAllByClientId(@RequestBody Map<String, String> body) {
+    public ResponseEntity<List<RequestSummary>> getAllByClientId(@RequestBody Map<String, String> body) {
         Long ClientId= Long.parseLong(body.get("ClientId"));
-        List<RequestEntity> requests = requestService.GetAllRequestsByClientId(ClientId);
+        long afterId = Long.parseLong(body.getOrDefault("afterId", "0"));
+        int limit = Integer.parseInt(body.getOrDefault("limit", String.valueOf(RequestService.DEFAULT_PAGE_SIZE)));
+        List<RequestSummary> requests = requestService.getRequestSummariesByClientId(ClientId, afterId, limit);
         if (requests.isEmpty()) {
             return ResponseEntity.noContent().build(); // Devuelve un 204 No Content si no hay resultados
         }
-        return ResponseEntity.ok(requests); // Devuelve un 200 OK con la lista de solicitudes
+        return page(requests, limit); // Devuelve un 200 OK con la lista de solicitudes
     }
 
 
     @GetMapping("/getAll")
-    public ResponseEntity<List<RequestEntity>> getAll() {
-        return ResponseEntity.ok(requestService.GetAllRequests());
+    public ResponseEntity<List<RequestSummary>> getAll(@RequestParam(defaultValue = "0") long afterId,
+                                                       @RequestParam(defaultValue = "" + RequestService.DEFAULT_PAGE_SIZE) int limit) {
+        return page(requestService.getRequestSummaries(afterId, limit), limit);
     }
 
+    private ResponseEntity<List<RequestSummary>> page(List<RequestSummary> requests, int limit) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!requests.isEmpty() && requests.size() >= RequestService.pageSize(limit)) {
+            response.header("X-Next-After-Id", String.valueOf(requests.get(requests.size() - 1).getId()));
+        }
+        return response.body(requests);
+    }
 
+    // Descarga el PDF de una solicitud como stream, acepta un header Range con un solo rango de bytes
+    @GetMapping("/get/{id}/pdf")
+    public ResponseEntity<StreamingResponseBody> getPdf(@PathVariable long id,
+                                                        @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader) {
+        long size;
+        try {
+            size = requestService.getPdfDocumentSize(id);
+        } catch (EntityNotFoundException e) {
+            return new ResponseEntity<>(null, HttpStatus.NOT_FOUND);
+        }
+        if (size == 0) {
+            return ResponseEntity.noContent().build();
+        }
 
+        long start = 0;
+        long end = size - 1;
+        HttpStatus status = HttpStatus.OK;
+        if (rangeHeader != null) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+                if (ranges.size() != 1) {
+                    throw new IllegalArgumentException("Only one range is supported");
+                }
+                start = ranges.get(0).getRangeStart(size);
+                end = ranges.get(0).getRangeEnd(size);
+                status = HttpStatus.PARTIAL_CONTENT;
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                        .build();
+            }
+        }
 
-
-
+        long offset = start;
+        long length = end - start + 1;
+        StreamingResponseBody body = outputStream -> requestService.writePdfDocument(id, offset, length, outputStream);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_PDF)
+                .contentLength(length)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"request-" + id + ".pdf\"");
+        if (status == HttpStatus.PARTIAL_CONTENT) {
+            response.header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        }
+        return response.body(body);
+    }
 
 }
@@ -6,7 +6,10 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
-@Table(name = "client")
+@Table(name = "client", indexes = {
+        @Index(name = "ux_client_rut", columnList = "rut", unique = true),
+        @Index(name = "ux_client_email", columnList = "email", unique = true)
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -29,6 +32,9 @@ public class ClientEntity {
     private int salary;
     private int JobTenure;
     private boolean Dicom;
+    // Incremented by every update, the cached evaluations of an older version are not used
+    @Version
+    private long version;
 
 
     public ClientEntity(String rut, String password, String email,String firstName, String lastname, int age,int salary, int JobTenure, boolean Dicom) {
@@ -0,0 +1,30 @@
+package backend.backend.Entity;
+
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+@Entity
+@Table(name = "client_savings")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+
+public class ClientSavingsEntity {
+    // Aggregates of the savings account of a client, kept up to date by HistoryCountService on every new
+    // movement so the balance does not have to be summed from the whole history.
+
+    @Id
+    private long clientid;
+    // Sum of every movement of the client
+    private long balance;
+    // Number of movements of the client, changes every time the history changes
+    private long movementCount;
+    private Timestamp lastChangeDate;
+
+
+}
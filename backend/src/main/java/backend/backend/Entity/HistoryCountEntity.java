@@ -10,15 +10,19 @@ import java.sql.Timestamp;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "HistoryCount")
+@Table(name = "HistoryCount", indexes = {
+        @Index(name = "idx_history_count_client_date", columnList = "clientid, ChangeDate")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 
 
 public class HistoryCountEntity {
+    // The ids come from a sequence in blocks of 50 so hibernate can batch the inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "history_count_seq")
+    @SequenceGenerator(name = "history_count_seq", sequenceName = "history_count_seq", allocationSize = 50)
     private long id;
     private long clientid;
     // if is false is a retire of money and if is true is a deposit of money
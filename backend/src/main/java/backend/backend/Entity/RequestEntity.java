@@ -1,13 +1,18 @@
 package backend.backend.Entity;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.sql.Blob;
+
 @Entity
-@Table(name = "Request")
+@Table(name = "Request", indexes = {
+        @Index(name = "idx_request_client_stage", columnList = "clientId, Stage")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -23,8 +28,22 @@ public class RequestEntity {
     private int Amount;
     private int yearTerm;
 
+    // Legacy storage of the PDF inside the table. New documents go to the DocumentStore and this column
+    // stays null; the documents.migrate command moves the old ones out.
     @Lob
-    private byte[] pdfDocument;
+    @JsonIgnore
+    private Blob pdfDocument;
+
+    // SHA-256 of the PDF, key of the document in the DocumentStore
+    @Column(length = 64)
+    private String documentHash;
+
+    // Size of the PDF in bytes, so the listings can show it without reading the document
+    private Long documentSize;
+
+    // Incremented on every stage change, used to detect concurrent updates
+    @Version
+    private int version;
 
 
 }
@@ -1,7 +1,12 @@
 package backend.backend.Repository;
 
 import backend.backend.Entity.ClientEntity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -9,8 +14,16 @@ import org.springframework.stereotype.Repository;
 public interface ClientRepository extends JpaRepository<ClientEntity, Long> {
 
     ClientEntity findByEmail(String email);
+
+    // The clients read by ClientCache are shared and never modified, Hibernate keeps no snapshot of them.
+    // findById(long) is written as a query so the hint applies: Spring Data would otherwise run it through
+    // EntityManager.find, which does not take the hint from the annotation.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     ClientEntity findByRut(String rut);
-    ClientEntity findById(long id);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("select c from ClientEntity c where c.id = :id")
+    ClientEntity findById(@Param("id") long id);
 
 
 
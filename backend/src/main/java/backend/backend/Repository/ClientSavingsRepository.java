@@ -0,0 +1,68 @@
+package backend.backend.Repository;
+
+import backend.backend.Entity.ClientSavingsEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+
+public interface ClientSavingsRepository extends JpaRepository<ClientSavingsEntity, Long> {
+
+    // Aggregates of one or several clients as DTOs, for the reads of the evaluation
+    @Query("select new backend.backend.Repository.SavingsSummary(s.clientid, s.balance, s.movementCount) " +
+            "from ClientSavingsEntity s where s.clientid = :clientId")
+    Optional<SavingsSummary> findSummaryById(@Param("clientId") long clientId);
+
+    @Query("select new backend.backend.Repository.SavingsSummary(s.clientid, s.balance, s.movementCount) " +
+            "from ClientSavingsEntity s where s.clientid in :clientIds")
+    List<SavingsSummary> findSummariesByClientidIn(@Param("clientIds") Collection<Long> clientIds);
+
+    // Adds movements to the aggregates of a client in one atomic statement, creating the row if needed
+    @Modifying
+    @Query(value = "insert into client_savings (clientid, balance, movement_count, last_change_date) " +
+            "values (:clientId, :change, :count, :changeDate) " +
+            "on conflict (clientid) do update set " +
+            "balance = client_savings.balance + excluded.balance, " +
+            "movement_count = client_savings.movement_count + excluded.movement_count, " +
+            "last_change_date = greatest(client_savings.last_change_date, excluded.last_change_date)",
+            nativeQuery = true)
+    int applyMovements(@Param("clientId") long clientId, @Param("change") long change, @Param("count") long count,
+                       @Param("changeDate") Timestamp changeDate);
+
+    // Blocks applyMovements until the transaction ends, readers are not blocked. A rebuild takes it before
+    // deleting so a movement is either committed before the rebuild reads the history or applied after it.
+    @Modifying
+    @Query(value = "lock table client_savings in share row exclusive mode", nativeQuery = true)
+    void lockSavings();
+
+    // Recomputes the aggregates of every client from the raw history
+    @Modifying
+    @Query(value = "delete from client_savings", nativeQuery = true)
+    int deleteAllSavings();
+
+    @Modifying
+    @Query(value = "insert into client_savings (clientid, balance, movement_count, last_change_date) " +
+            "select clientid, coalesce(sum(change), 0), count(*), max(change_date) from history_count group by clientid",
+            nativeQuery = true)
+    int insertAllSavingsFromHistory();
+
+    // Recomputes the aggregates of one client from the raw history
+    @Modifying
+    @Query(value = "delete from client_savings where clientid = :clientId", nativeQuery = true)
+    int deleteSavings(@Param("clientId") long clientId);
+
+    @Modifying
+    @Query(value = "insert into client_savings (clientid, balance, movement_count, last_change_date) " +
+            "select clientid, coalesce(sum(change), 0), count(*), max(change_date) from history_count " +
+            "where clientid = :clientId group by clientid",
+            nativeQuery = true)
+    int insertSavingsFromHistory(@Param("clientId") long clientId);
+}
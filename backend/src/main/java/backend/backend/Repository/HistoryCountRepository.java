@@ -1,9 +1,17 @@
 package backend.backend.Repository;
 
 import backend.backend.Entity.HistoryCountEntity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -12,4 +20,34 @@ public interface HistoryCountRepository extends JpaRepository<HistoryCountEntity
 
 
     List<HistoryCountEntity> findAllByClientid(Long clientid);
+
+    // Movements of a client from the newest to the oldest, one page at a time (keyset pagination over the
+    // (clientid, ChangeDate) index). The pages are only serialized, so they are loaded read-only.
+    // Movements without a date come first, the order the index gives when it is read backwards.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("select h from HistoryCountEntity h where h.clientid = :clientId order by h.ChangeDate desc nulls first, h.id desc")
+    List<HistoryCountEntity> findFirstPageByClientid(@Param("clientId") long clientId, Pageable page);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("select h from HistoryCountEntity h where h.clientid = :clientId " +
+            "and (h.ChangeDate < :beforeDate or (h.ChangeDate = :beforeDate and h.id < :beforeId)) " +
+            "order by h.ChangeDate desc nulls first, h.id desc")
+    List<HistoryCountEntity> findPageByClientidBefore(@Param("clientId") long clientId, @Param("beforeDate") Timestamp beforeDate,
+                                                      @Param("beforeId") long beforeId, Pageable page);
+
+    // Page after a movement without a date: the older movements without a date and then every dated one
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("select h from HistoryCountEntity h where h.clientid = :clientId " +
+            "and (h.ChangeDate is not null or h.id < :beforeId) " +
+            "order by h.ChangeDate desc nulls first, h.id desc")
+    List<HistoryCountEntity> findPageByClientidBeforeUndated(@Param("clientId") long clientId, @Param("beforeId") long beforeId,
+                                                             Pageable page);
+
+    // Balance of the account of a client, computed by the database
+    @Query("select coalesce(sum(h.Change), 0) from HistoryCountEntity h where h.clientid = :clientId")
+    long sumChangeByClientid(@Param("clientId") long clientId);
+
+    // Balance of several clients in one query, each row is {clientid, sum}
+    @Query("select h.clientid, coalesce(sum(h.Change), 0) from HistoryCountEntity h where h.clientid in :clientIds group by h.clientid")
+    List<Object[]> sumChangeByClientidIn(@Param("clientIds") Collection<Long> clientIds);
 }
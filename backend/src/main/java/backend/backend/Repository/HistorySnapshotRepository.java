@@ -0,0 +1,92 @@
+package backend.backend.Repository;
+
+import backend.backend.Service.HistorySnapshot;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+@Repository
+
+public class HistorySnapshotRepository {
+    // Reads the change and date columns of history_count straight into HistorySnapshot arrays with plain JDBC,
+    // without creating entities or adding them to the persistence context. Spring Data does not time this class,
+    // each method is recorded in spring.data.repository.invocations with the same tags as the JPA repositories.
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Movements of a client made since a date, in insertion order
+    public HistorySnapshot findByClientidSince(long clientId, Timestamp since) {
+        return timed("findByClientidSince", () -> {
+            HistorySnapshot.Builder builder = new HistorySnapshot.Builder();
+            jdbcTemplate.query("select change, change_date from history_count " +
+                            "where clientid = :clientId and change_date >= :since order by id",
+                    new MapSqlParameterSource("clientId", clientId).addValue("since", since),
+                    collectInto(builder));
+            return builder.build();
+        });
+    }
+
+    // Movements of several clients made since a date, by client. Clients without movements are not in the map.
+    public Map<Long, HistorySnapshot> findByClientidInSince(Collection<Long> clientIds, Timestamp since) {
+        return timed("findByClientidInSince", () -> {
+            Map<Long, HistorySnapshot.Builder> builders = new HashMap<>();
+            jdbcTemplate.query("select clientid, change, change_date from history_count " +
+                            "where clientid in (:clientIds) and change_date >= :since order by clientid, id",
+                    new MapSqlParameterSource("clientIds", clientIds).addValue("since", since),
+                    (RowCallbackHandler) rs -> {
+                        Timestamp changeDate = rs.getTimestamp(3);
+                        builders.computeIfAbsent(rs.getLong(1), id -> new HistorySnapshot.Builder())
+                                .add(rs.getInt(2), changeDate == null ? Long.MIN_VALUE : changeDate.getTime());
+                    });
+            Map<Long, HistorySnapshot> snapshots = new HashMap<>();
+            builders.forEach((clientId, builder) -> snapshots.put(clientId, builder.build()));
+            return snapshots;
+        });
+    }
+
+    // Runs the query and records its time with the tags of Spring Data: repository, method, state and exception
+    private <T> T timed(String method, Supplier<T> query) {
+        long start = System.nanoTime();
+        try {
+            T result = query.get();
+            timer(method, "SUCCESS", "None").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (RuntimeException e) {
+            timer(method, "ERROR", e.getClass().getSimpleName()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private Timer timer(String method, String state, String exception) {
+        return Timer.builder("spring.data.repository.invocations")
+                .description("Duration of repository invocations")
+                .tag("repository", "HistorySnapshotRepository")
+                .tag("method", method)
+                .tag("state", state)
+                .tag("exception", exception)
+                .register(meterRegistry);
+    }
+
+    // Adds each row {change, change_date} to the builder
+    private static RowCallbackHandler collectInto(HistorySnapshot.Builder builder) {
+        return rs -> {
+            Timestamp changeDate = rs.getTimestamp(2);
+            builder.add(rs.getInt(1), changeDate == null ? Long.MIN_VALUE : changeDate.getTime());
+        };
+    }
+}
@@ -1,11 +1,16 @@
 package backend.backend.Repository;
 
-import backend.backend.Entity.HistoryCountEntity;
 import backend.backend.Entity.RequestEntity;
 import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Blob;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -16,5 +21,46 @@ public interface RequestRepository extends JpaRepository<RequestEntity, Long> {
     @Transactional
     List<RequestEntity> findAllByClientId(Long ClientId);
 
+    // Listings without the PDF column, one page at a time ordered by id (keyset pagination)
+    @Query("select new backend.backend.Repository.RequestSummary(r.id, r.typeOfRequest, r.Stage, r.Amount, r.yearTerm, r.clientId, r.documentSize, r.version) " +
+            "from RequestEntity r where r.id > :afterId order by r.id")
+    List<RequestSummary> findSummariesAfter(@Param("afterId") long afterId, Pageable page);
+
+    @Query("select new backend.backend.Repository.RequestSummary(r.id, r.typeOfRequest, r.Stage, r.Amount, r.yearTerm, r.clientId, r.documentSize, r.version) " +
+            "from RequestEntity r where r.clientId = :clientId and r.id > :afterId order by r.id")
+    List<RequestSummary> findSummariesByClientIdAfter(@Param("clientId") long clientId, @Param("afterId") long afterId, Pageable page);
+
+    // Only the PDF of one request, it has to be read inside a transaction
+    @Query("select r.pdfDocument from RequestEntity r where r.id = :id")
+    Blob findPdfDocumentById(@Param("id") long id);
+
+    @Query("select r.documentSize from RequestEntity r where r.id = :id")
+    Long findDocumentSizeById(@Param("id") long id);
+
+    @Query("select r.documentHash from RequestEntity r where r.id = :id")
+    String findDocumentHashById(@Param("id") long id);
+
+    // Stage changes without loading the entity, the number of updated rows tells if the request exists
+    @Modifying
+    @Query("update RequestEntity r set r.Stage = :stage, r.version = r.version + 1 where r.id = :id")
+    int updateStage(@Param("id") long id, @Param("stage") int stage);
+
+    @Modifying
+    @Query("update RequestEntity r set r.Stage = :stage, r.version = r.version + 1 where r.id = :id and r.version = :version")
+    int updateStageIfVersion(@Param("id") long id, @Param("stage") int stage, @Param("version") int version);
+
+    @Modifying
+    @Query("update RequestEntity r set r.Stage = :stage, r.version = r.version + 1 where r.id in :ids")
+    int updateStageBulk(@Param("ids") Collection<Long> ids, @Param("stage") int stage);
+
+    // Requests whose PDF is still stored in the table
+    @Query("select r.id from RequestEntity r where r.pdfDocument is not null and r.documentHash is null order by r.id")
+    List<Long> findIdsWithLegacyDocument();
+
+    // Points a request to its document in the DocumentStore and drops the copy kept in the table
+    @Modifying
+    @Query("update RequestEntity r set r.documentHash = :hash, r.documentSize = :size, r.pdfDocument = null where r.id = :id")
+    int moveDocumentToStore(@Param("id") long id, @Param("hash") String hash, @Param("size") long size);
+
 
 }
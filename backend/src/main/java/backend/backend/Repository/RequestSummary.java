@@ -0,0 +1,24 @@
+package backend.backend.Repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+
+public class RequestSummary {
+    // Request without its PDF, used by the listings so they never read the document column
+
+    private long id;
+    private String typeOfRequest;
+    private int stage;
+    private int amount;
+    private int yearTerm;
+    private long clientId;
+    // Size of the PDF in bytes, null for requests created before it was stored
+    private Long documentSize;
+    // Version to send back when updating the stage
+    private int version;
+}
@@ -0,0 +1,18 @@
+package backend.backend.Repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+
+public class SavingsSummary {
+    // Savings aggregates of a client read as values, used by the evaluation so it never loads managed
+    // ClientSavingsEntity objects
+
+    private long clientid;
+    private long balance;
+    private long movementCount;
+}
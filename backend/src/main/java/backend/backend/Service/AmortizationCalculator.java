@@ -0,0 +1,167 @@
+package backend.backend.Service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+@Component
+
+public class AmortizationCalculator {
+    // Closed-form amortization math used by P1 (simulateLoanAmount) and P6 (totalCostP6).
+    // Every calculation is done in double and the money amounts are truncated to whole pesos at the end,
+    // the same rounding the previous int casts applied. Nothing is allocated on the hot path except when
+    // a new (rate, term) pair enters the cache.
+
+    // Number of (rate, term) pairs remembered, must be a power of two
+    private static final int CACHE_SIZE = 256;
+
+    private final AtomicReferenceArray<GrowthFactor> growthFactors = new AtomicReferenceArray<>(CACHE_SIZE);
+
+    // (1 + monthlyRate)^months for one (rate, term) pair, immutable so it can be shared between threads
+    private static final class GrowthFactor {
+        private final long rateBits;
+        private final int months;
+        private final double value;
+
+        private GrowthFactor(long rateBits, int months, double value) {
+            this.rateBits = rateBits;
+            this.months = months;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Calculates (1 + monthlyRate)^months, reusing the last value computed for the same pair.
+     *
+     * @param monthlyRate The monthly interest rate as a decimal.
+     * @param months      The number of installments.
+     * @return The compound growth factor of the loan.
+     */
+    public double growthFactor(double monthlyRate, int months) {
+        long rateBits = Double.doubleToLongBits(monthlyRate);
+        int slot = slot(rateBits, months);
+        GrowthFactor cached = growthFactors.get(slot);
+        if (cached != null && cached.rateBits == rateBits && cached.months == months) {
+            return cached.value;
+        }
+        double value = Math.pow(1 + monthlyRate, months);
+        growthFactors.set(slot, new GrowthFactor(rateBits, months, value));
+        return value;
+    }
+
+    /**
+     * Fraction of the loan amount paid in each installment: r(1+r)^n / ((1+r)^n - 1).
+     * A loan without interest is paid in equal parts.
+     *
+     * @param monthlyRate The monthly interest rate as a decimal.
+     * @param months      The number of installments.
+     * @return The installment of a loan of 1.
+     */
+    public double installmentFactor(double monthlyRate, int months) {
+        if (months <= 0) {
+            throw new IllegalArgumentException("The term of the loan must be at least one month.");
+        }
+        if (monthlyRate == 0) {
+            return 1.0 / months;
+        }
+        double growth = growthFactor(monthlyRate, months);
+        return monthlyRate * growth / (growth - 1);
+    }
+
+    /**
+     * P1: Monthly installment of an amortizing loan.
+     *
+     * @param amount         The loan amount.
+     * @param termYears      The term of the loan in years.
+     * @param annualInterest The annual interest rate as a decimal (e.g., 0.05 for 5%).
+     * @return The monthly installment truncated to whole pesos.
+     */
+    public int monthlyInstallment(int amount, int termYears, double annualInterest) {
+        double installment = amount * installmentFactor(annualInterest / 12, termYears * 12);
+        return (int) installment;
+    }
+
+    /**
+     * P6: Total cost of the loan including insurance and administration fee.
+     *
+     * @param amount         The loan amount.
+     * @param termYears      The loan term in years.
+     * @param annualInterest The annual interest rate.
+     * @param lifeInsurance  The monthly life insurance as a percentage of the loan amount.
+     * @param fireInsurance  The fixed monthly cost of fire insurance.
+     * @param adminFee       The administration fee as a percentage of the loan amount.
+     * @return The total cost over the entire term truncated to whole pesos.
+     */
+    public int totalCost(int amount, int termYears, double annualInterest, double lifeInsurance, double fireInsurance, double adminFee) {
+        int termMonths = termYears * 12;
+        double totalMonthlyCost = monthlyInstallment(amount, termYears, annualInterest) + fireInsurance + lifeInsurance * amount;
+        double total = totalMonthlyCost * termMonths + adminFee * amount;
+        return (int) total;
+    }
+
+    /**
+     * Month-by-month schedule of the loan with the same charges as totalCost: the P1 installment,
+     * life insurance over the loan amount and fire insurance every month, and the administration fee
+     * with the first installment. The last installment is adjusted so the balance ends at zero. The
+     * rows are computed one at a time while the iterator is consumed, so long terms never build the
+     * whole schedule in memory.
+     *
+     * @param amount         The loan amount.
+     * @param termYears      The loan term in years.
+     * @param annualInterest The annual interest rate.
+     * @param lifeInsurance  The monthly life insurance as a percentage of the loan amount.
+     * @param fireInsurance  The fixed monthly cost of fire insurance.
+     * @param adminFee       The administration fee as a percentage of the loan amount.
+     * @return An iterator over the installments of the loan.
+     */
+    public Iterator<AmortizationRow> schedule(int amount, int termYears, double annualInterest, double lifeInsurance, double fireInsurance, double adminFee) {
+        int termMonths = termYears * 12;
+        double monthlyRate = annualInterest / 12;
+        int installment = monthlyInstallment(amount, termYears, annualInterest);
+        double lifeInsuranceCost = lifeInsurance * amount;
+        double fee = adminFee * amount;
+
+        return new Iterator<>() {
+            private int month = 0;
+            private double balance = amount;
+
+            @Override
+            public boolean hasNext() {
+                return month < termMonths;
+            }
+
+            @Override
+            public AmortizationRow next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                month++;
+                double interest = balance * monthlyRate;
+                double payment = installment;
+                if (month == termMonths) {
+                    // The installment is truncated to whole pesos, the last one settles the difference
+                    payment = balance + interest;
+                }
+                double principal = payment - interest;
+                balance -= principal;
+                double monthFee = month == 1 ? fee : 0;
+                double total = payment + lifeInsuranceCost + fireInsurance + monthFee;
+                return new AmortizationRow(month, round(payment), round(interest), round(principal), round(balance),
+                        lifeInsuranceCost, fireInsurance, monthFee, round(total));
+            }
+        };
+    }
+
+    // Rounds to cents for display, the schedule keeps working with the exact values
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private static int slot(long rateBits, int months) {
+        long hash = (rateBits ^ (rateBits >>> 32)) * 31 + months;
+        hash ^= hash >>> 16;
+        return (int) hash & (CACHE_SIZE - 1);
+    }
+}
@@ -0,0 +1,28 @@
+package backend.backend.Service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+
+public class AmortizationRow {
+    // One installment of the amortization schedule of a loan
+
+    private int month;
+    // Installment of the loan (interest + principal), the value returned by P1. The last one also pays
+    // what the truncation of the previous installments left unpaid.
+    private double installment;
+    private double interest;
+    private double principal;
+    // Amount still owed after paying this installment
+    private double balance;
+    private double lifeInsurance;
+    private double fireInsurance;
+    // The administration fee is charged only with the first installment
+    private double adminFee;
+    // Everything the client pays this month
+    private double total;
+}
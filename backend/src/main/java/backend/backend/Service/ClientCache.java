@@ -0,0 +1,101 @@
+package backend.backend.Service;
+
+import backend.backend.Entity.ClientEntity;
+import backend.backend.Repository.ClientRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+
+public class ClientCache implements MeterBinder {
+    // Read-through cache of the clients in front of ClientRepository. The entries expire after a TTL so a missed
+    // invalidation only lasts that long, ClientCacheInvalidator evicts them when another replica changes a client.
+    // The hits and misses are published as the cache.gets metric with the tag cache=clients.
+
+    private final ClientRepository clientRepository;
+    private final Cache<Long, ClientEntity> clientsById;
+    // rut -> id, the client itself is always read from clientsById
+    private final Cache<String, Long> idsByRut;
+
+    public ClientCache(ClientRepository clientRepository,
+                       @Value("${clients.cache.max-size:10000}") long maxSize,
+                       @Value("${clients.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.clientRepository = clientRepository;
+        this.clientsById = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        this.idsByRut = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    // Client with the given id, null if it does not exist. Missing clients are not cached.
+    public ClientEntity get(long id) {
+        return clientsById.get(id, key -> clientRepository.findById((long) key));
+    }
+
+    // Client with the given RUT, null if it does not exist
+    public ClientEntity getByRut(String rut) {
+        Long id = idsByRut.getIfPresent(rut);
+        if (id != null) {
+            ClientEntity client = get(id);
+            // The client could have changed its RUT since the index was filled
+            if (client != null && rut.equals(client.getRut())) {
+                return client;
+            }
+            idsByRut.invalidate(rut);
+        }
+        ClientEntity client = clientRepository.findByRut(rut);
+        if (client != null) {
+            put(client);
+        }
+        return client;
+    }
+
+    // Clients with the given ids, the missing ones are read with a single IN query. Ids that do not exist are left out.
+    public Map<Long, ClientEntity> getAll(Collection<Long> ids) {
+        return clientsById.getAll(ids, missing -> {
+            Map<Long, ClientEntity> loaded = new HashMap<>();
+            for (ClientEntity client : clientRepository.findAllById(new ArrayList<>(missing))) {
+                loaded.put(client.getId(), client);
+            }
+            return loaded;
+        });
+    }
+
+    // Stores a client that was just saved
+    public void put(ClientEntity client) {
+        clientsById.put(client.getId(), client);
+        if (client.getRut() != null) {
+            idsByRut.put(client.getRut(), client.getId());
+        }
+    }
+
+    public void evict(long id) {
+        clientsById.invalidate(id);
+    }
+
+    public void evictAll() {
+        clientsById.invalidateAll();
+        idsByRut.invalidateAll();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, clientsById, "clients");
+    }
+}
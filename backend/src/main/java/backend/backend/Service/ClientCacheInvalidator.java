@@ -0,0 +1,126 @@
+package backend.backend.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+@Component
+
+public class ClientCacheInvalidator {
+    // Keeps the ClientCache of every replica consistent with PostgreSQL LISTEN/NOTIFY. A replica that changes a
+    // client sends "<instance>:<client id>" on the client_changed channel and the others evict that client.
+    // The listener uses its own connection outside the pool. If it is lost, the cache is emptied after
+    // reconnecting because the notifications sent in between are not delivered again.
+
+    private static final Logger log = LoggerFactory.getLogger(ClientCacheInvalidator.class);
+    static final String CHANNEL = "client_changed";
+    private static final int POLL_MS = 5000;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private volatile boolean running;
+    private Thread listener;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ClientCache clientCache;
+
+    @Value("${clients.cache.listen:true}")
+    private boolean listen;
+
+    @Value("${spring.datasource.url}")
+    private String url;
+
+    @Value("${spring.datasource.username:}")
+    private String username;
+
+    @Value("${spring.datasource.password:}")
+    private String password;
+
+    // Tells the other replicas that a client changed. The change is already saved, so a failure only means the
+    // other replicas keep the old client until its TTL expires.
+    public void publish(long clientId) {
+        try {
+            jdbcTemplate.query("select pg_notify(?, ?)", rs -> null, CHANNEL, instanceId + ":" + clientId);
+        } catch (DataAccessException e) {
+            log.warn("Could not notify the change of client {}", clientId, e);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!listen) {
+            return;
+        }
+        running = true;
+        listener = new Thread(this::listen, "client-cache-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(url, username, password)) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                clientCache.evictAll();
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_MS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        handle(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Lost the client cache listener connection, retrying", e);
+                try {
+                    Thread.sleep(POLL_MS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    void handle(String payload) {
+        int separator = payload.lastIndexOf(':');
+        if (separator < 0 || payload.substring(0, separator).equals(instanceId)) {
+            return;
+        }
+        try {
+            clientCache.evict(Long.parseLong(payload.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring client cache notification {}", payload);
+        }
+    }
+}
@@ -3,10 +3,17 @@ package backend.backend.Service;
 import backend.backend.Entity.ClientEntity;
 import backend.backend.Repository.ClientRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 
@@ -19,14 +26,39 @@ public class ClientService {
     @Autowired
     private HistoryCountService historyCountService;
 
-    // P2: Creates a new client and saves it in the repository
+    @Autowired
+    private ParallelRuleExecutor parallelRuleExecutor;
+
+    @Autowired
+    private AmortizationCalculator amortizationCalculator;
+
+    @Autowired
+    private ClientCache clientCache;
+
+    @Autowired
+    private ClientCacheInvalidator clientCacheInvalidator;
+
+    @Autowired
+    private EvaluationResultCache evaluationResultCache;
+
+    @Autowired
+    private RuleMetrics ruleMetrics;
+
+    // Evaluations accepted by RcompleteBatch, every client id of the batch is bound in the same IN queries
+    @Value("${evaluation.batch.max-size:1000}")
+    private int maxBatchSize;
+
+    // P2: Creates a new client and saves it in the repository, the cache of every replica is updated
     public ClientEntity createClient(ClientEntity client) {
-        return clientRepository.save(client);
+        ClientEntity saved = clientRepository.save(client);
+        clientCache.put(saved);
+        clientCacheInvalidator.publish(saved.getId());
+        return saved;
     }
 
     // Retrieves a client from the repository by its ID
     public ClientEntity getClientById(long id) {
-        return clientRepository.findById(id);
+        return clientCache.get(id);
     }
 
     /**
@@ -36,7 +68,7 @@ public class ClientService {
      * @return The ClientEntity object if found, otherwise null.
      */
     public ClientEntity getClient(String rut) {
-        return clientRepository.findByRut(rut);
+        return clientCache.getByRut(rut);
     }
 
     /**
@@ -49,39 +81,7 @@ public class ClientService {
      * @return The monthly payment amount.
      */
     public int simulateLoanAmount(int amount, int termYears, double annualInterest) {
-        // Monthly interest rate
-        double monthlyRate = annualInterest / 12;
-        // Total number of months for the loan term
-        int totalMonths = termYears * 12;
-        // Calculate the monthly rate + 1 for the amortization formula
-        float monthlyRatePlusOne = (float) (monthlyRate + 1);
-
-        System.out.println("yo deberia ser 0.00375 " + monthlyRate);
-        System.out.println("yo deberia ser 240 " + totalMonths);
-
-        // Power term for the amortization formula
-        float powerTerm = (float) Math.pow(monthlyRatePlusOne, totalMonths);
-
-
-
-
-        // Numerator of the formula
-        double numerator = (monthlyRate * powerTerm);
-        System.out.println("yo deberia ser: 0.0092079989" +numerator);
-
-        // Denominator of the formula
-        double denominator = powerTerm - 1;
-
-
-
-        // Return the calculated monthly payment amount
-        double D =   (numerator / denominator);
-
-        System.out.println("yo deberia ser: 0.0063264938 " + D);
-
-        double N = amount * D;
-        int J = (int) N;
-        return J;
+        return amortizationCalculator.monthlyInstallment(amount, termYears, annualInterest);
     }
 
     /**
@@ -97,21 +97,16 @@ public class ClientService {
      * @return The total loan cost over the entire term.
      */
     public int totalCostP6(int amount, int termYears, double annualInterest, double lifeInsurance, double fireInsurance, double adminFee) {
-        // Calculate the total term in months
-        int termMonths = termYears * 12;
-        // Calculate the monthly loan payment
-        double monthlyLoan = simulateLoanAmount(amount, termYears, annualInterest);
-        // Calculate the life insurance cost (percentage of the loan amount)
-        double lifeInsuranceCost = lifeInsurance * amount;
-        // Calculate the administration fee
-        double fee = adminFee * amount;
-        // Total monthly cost including loan payment, fire insurance, and life insurance
-        double totalMonthlyCost = monthlyLoan + fireInsurance + lifeInsuranceCost;
-        // Return the total cost over the entire loan term plus the administration fee
-
-        double total =  (totalMonthlyCost * termMonths) + fee;
-
-        return (int) total;
+        return amortizationCalculator.totalCost(amount, termYears, annualInterest, lifeInsurance, fireInsurance, adminFee);
+    }
+
+    /**
+     * Month-by-month amortization schedule of a loan, with the same charges used by P6.
+     *
+     * @return An iterator that computes each installment when it is requested.
+     */
+    public Iterator<AmortizationRow> amortizationSchedule(int amount, int termYears, double annualInterest, double lifeInsurance, double fireInsurance, double adminFee) {
+        return amortizationCalculator.schedule(amount, termYears, annualInterest, lifeInsurance, fireInsurance, adminFee);
     }
 
     /**
@@ -122,11 +117,21 @@ public class ClientService {
      * @return true if the loan amount does not exceed 35% of the client's salary.
      */
     public boolean R1(long Id, int amount, int termYears, double annualInterest) {
-        int M = simulateLoanAmount( amount, termYears,  annualInterest);;
+        // Retrieve client by RUT
+        ClientEntity client = clientCache.get(Id);
+        return R1(client, amount, termYears, annualInterest);
+    }
 
+    /**
+     * R1 over a client already loaded by the caller.
+     *
+     * @param client The client to evaluate.
+     * @param amount The loan amount.
+     * @return true if the loan amount does not exceed 35% of the client's salary.
+     */
+    public boolean R1(ClientEntity client, int amount, int termYears, double annualInterest) {
+        int M = simulateLoanAmount( amount, termYears,  annualInterest);;
 
-        // Retrieve client by RUT
-        ClientEntity client = clientRepository.findById(Id);
         // Get client's salary
         int salary = client.getSalary();
 
@@ -145,7 +150,12 @@ public class ClientService {
      */
     public boolean R2(long clientId) {
         // Retrieve client by ID
-        ClientEntity client = clientRepository.findById(clientId);
+        ClientEntity client = clientCache.get(clientId);
+        return R2(client);
+    }
+
+    // R2 over a client already loaded by the caller
+    public boolean R2(ClientEntity client) {
         // Check if the client has a bad credit record (Dicom)
         boolean dicom = client.GetDicom();
         if (!dicom) {
@@ -162,7 +172,12 @@ public class ClientService {
      */
     public boolean R3(long clientId) {
         // Retrieve client by ID
-        ClientEntity client = clientRepository.findById(clientId);
+        ClientEntity client = clientCache.get(clientId);
+        return R3(client);
+    }
+
+    // R3 over a client already loaded by the caller
+    public boolean R3(ClientEntity client) {
         // Check the client's job tenure in years
         int jobTenure = client.getJobTenure();
         if (jobTenure > 1) {
@@ -180,10 +195,15 @@ public class ClientService {
      * @return true if the debt-to-income ratio is less than 50%.
      */
     public boolean R4(long clientId, int debt, int amount) {
+        // Retrieve client by ID
+        ClientEntity client = clientCache.get(clientId);
+        return R4(client, debt, amount);
+    }
+
+    // R4 over a client already loaded by the caller
+    public boolean R4(ClientEntity client, int debt, int amount) {
         // Calculate the total debt after adding the loan
         int sum = amount + debt;
-        // Retrieve client by ID
-        ClientEntity client = clientRepository.findById(clientId);
         // Get the client's salary
         int salary = client.getSalary();
 
@@ -249,7 +269,12 @@ public class ClientService {
      */
     public boolean R6(long id) {
         // Retrieve client by ID
-        ClientEntity client = clientRepository.findById(id);
+        ClientEntity client = clientCache.get(id);
+        return R6(client);
+    }
+
+    // R6 over a client already loaded by the caller
+    public boolean R6(ClientEntity client) {
         // Get client's age
         int age = client.getAge();
         if (age > 70) {
@@ -259,15 +284,89 @@ public class ClientService {
         return true;
     }
 
+    // Loads the data shared by every rule of an evaluation, the client is read only once
+    public EvaluationContext loadEvaluationContext(long clientId) {
+        ClientEntity client = clientCache.get(clientId);
+        return new EvaluationContext(clientId, client);
+    }
+
+    /**
+     * Evaluates every rule for a client. Repeated evaluations with the same parameters are answered from
+     * EvaluationResultCache while the client and its history do not change. The evaluation never writes: the client
+     * comes from ClientCache and the history is read in a read-only transaction of HistoryCountService, so Hibernate
+     * keeps no snapshot of what they load. There is no transaction around the whole evaluation, in parallel mode it
+     * would hold a connection of the pool idle on this thread while its tasks wait for their own.
+     */
     public List<Boolean> Rcomplete (Long ClientId, int type,  int loan, int debt, int amount, int older, int termYears, double annualInterest) {
+        ClientEntity client = evaluationResultCache.isEnabled() ? clientCache.get(ClientId) : null;
+        if (client == null) {
+            return evaluate(ClientId, type, loan, debt, amount, older, termYears, annualInterest);
+        }
+        // The history version is read before evaluating, a movement added in between only makes the entry newer than its key
+        long historyVersion = historyCountService.getHistoryVersion(ClientId);
+        EvaluationInput input = new EvaluationInput(ClientId, type, loan, debt, amount, older, termYears, annualInterest);
+        return evaluationResultCache.get(input, client.getVersion(), historyVersion,
+                () -> evaluate(ClientId, type, loan, debt, amount, older, termYears, annualInterest));
+    }
+
+    private List<Boolean> evaluate (Long ClientId, int type,  int loan, int debt, int amount, int older, int termYears, double annualInterest) {
+        if (parallelRuleExecutor.isEnabled()) {
+            return RcompleteParallel(ClientId, type, loan, debt, amount, older, termYears, annualInterest);
+        }
+        EvaluationContext context = loadEvaluationContext(ClientId);
+        return Rcomplete(context, type, loan, debt, amount, older, termYears, annualInterest);
+    }
+
+    /**
+     * Same result as Rcomplete, but the client and its savings history are read at the same time and each
+     * rule runs in the evaluation pool as soon as its data is ready. The latency is that of the slowest query
+     * instead of the sum of them. If a rule fails, its exception is thrown without waiting for the others.
+     */
+    public List<Boolean> RcompleteParallel (Long ClientId, int type,  int loan, int debt, int amount, int older, int termYears, double annualInterest) {
+        CompletableFuture<ClientEntity> client = parallelRuleExecutor.submit(() -> clientCache.get(ClientId));
+        CompletableFuture<SavingsSnapshot> snapshot = parallelRuleExecutor.submit(() -> historyCountService.getSavingsSnapshot(ClientId));
+
+        List<CompletableFuture<Boolean>> rules = new ArrayList<>();
+        rules.add(client.thenApply(c -> ruleMetrics.record("R1", () -> R1(c, amount, termYears, annualInterest))));
+        rules.add(client.thenApply(c -> ruleMetrics.record("R2", () -> R2(c))));
+        rules.add(client.thenApply(c -> ruleMetrics.record("R3", () -> R3(c))));
+        rules.add(client.thenApply(c -> ruleMetrics.record("R4", () -> R4(c, debt, amount))));
+        rules.add(CompletableFuture.completedFuture(ruleMetrics.record("R5", () -> R5(type, amount, loan))));
+        rules.add(client.thenApply(c -> ruleMetrics.record("R6", () -> R6(c))));
+        rules.add(client.thenCombine(snapshot, (c, s) -> ruleMetrics.record("R7", () -> historyCountService.R7Complete(s, c, older, amount))));
+        return parallelRuleExecutor.joinAll(rules);
+    }
+
+    /**
+     * Same result as Rcomplete with the detail of the evaluation: the queries with their rows and each rule with
+     * its time and the values it compared. It always runs sequentially and never uses EvaluationResultCache.
+     *
+     * @return The trace, its results are the same list returned by Rcomplete.
+     */
+    @Transactional(readOnly = true)
+    public EvaluationTrace RcompleteTraced (Long ClientId, int type,  int loan, int debt, int amount, int older, int termYears, double annualInterest) {
+        EvaluationTrace trace = new EvaluationTrace();
+        long start = System.nanoTime();
+        ClientEntity client = clientCache.get(ClientId);
+        trace.query("client", start, client == null ? 0 : 1, EvaluationTrace.values("clientId", ClientId));
+        EvaluationContext context = new EvaluationContext(ClientId, client, trace);
+        trace.finish(Rcomplete(context, type, loan, debt, amount, older, termYears, annualInterest));
+        return trace;
+    }
+
+    public List<Boolean> Rcomplete (EvaluationContext context, int type,  int loan, int debt, int amount, int older, int termYears, double annualInterest) {
+        if (context.getTrace() != null) {
+            return RcompleteTraced(context, type, loan, debt, amount, older, termYears, annualInterest);
+        }
+        ClientEntity client = context.getClient();
         List<Boolean> ListReturn = new ArrayList<Boolean>();
-        boolean ResultR1 = R1(ClientId,  amount,  termYears, annualInterest);
-        boolean ResultR2 = R2(ClientId);
-        boolean ResultR3 = R3(ClientId);
-        boolean ResultR4 = R4(ClientId,debt,amount);
-        boolean ResultR5 = R5(type,amount,loan);
-        boolean ResultR6 = R6(ClientId);
-        boolean ResultR7 = historyCountService.R7Complete(ClientId,older,amount);
+        boolean ResultR1 = ruleMetrics.record("R1", () -> R1(client,  amount,  termYears, annualInterest));
+        boolean ResultR2 = ruleMetrics.record("R2", () -> R2(client));
+        boolean ResultR3 = ruleMetrics.record("R3", () -> R3(client));
+        boolean ResultR4 = ruleMetrics.record("R4", () -> R4(client,debt,amount));
+        boolean ResultR5 = ruleMetrics.record("R5", () -> R5(type,amount,loan));
+        boolean ResultR6 = ruleMetrics.record("R6", () -> R6(client));
+        boolean ResultR7 = ruleMetrics.record("R7", () -> historyCountService.R7Complete(context,older,amount));
         ListReturn.add(ResultR1);
         ListReturn.add(ResultR2);
         ListReturn.add(ResultR3);
@@ -279,8 +378,67 @@ public class ClientService {
 
     }
 
+    // Rcomplete recording each rule in the trace of the context. The values repeat the arithmetic of each rule
+    // (integer divisions included) so the trace shows exactly what was compared.
+    private List<Boolean> RcompleteTraced (EvaluationContext context, int type,  int loan, int debt, int amount, int older, int termYears, double annualInterest) {
+        EvaluationTrace trace = context.getTrace();
+        ClientEntity client = context.getClient();
+        List<Boolean> ListReturn = new ArrayList<Boolean>();
 
+        int installment = simulateLoanAmount(amount, termYears, annualInterest);
+        ListReturn.add(trace.rule("R1", () -> ruleMetrics.record("R1", () -> R1(client, amount, termYears, annualInterest)),
+                EvaluationTrace.values("installment", installment, "salary", client.getSalary(),
+                        "ratio", (double) (installment / client.getSalary()) * 100, "threshold", 35)));
+        ListReturn.add(trace.rule("R2", () -> ruleMetrics.record("R2", () -> R2(client)),
+                EvaluationTrace.values("dicom", client.GetDicom())));
+        ListReturn.add(trace.rule("R3", () -> ruleMetrics.record("R3", () -> R3(client)),
+                EvaluationTrace.values("jobTenure", client.getJobTenure(), "threshold", 1)));
+        ListReturn.add(trace.rule("R4", () -> ruleMetrics.record("R4", () -> R4(client, debt, amount)),
+                EvaluationTrace.values("amountPlusDebt", amount + debt, "salary", client.getSalary(),
+                        "ratio", (double) (client.getSalary() / (amount + debt)), "threshold", 0.5)));
+        ListReturn.add(trace.rule("R5", () -> ruleMetrics.record("R5", () -> R5(type, amount, loan)),
+                EvaluationTrace.values("type", type, "cost", amount, "loan", loan)));
+        ListReturn.add(trace.rule("R6", () -> ruleMetrics.record("R6", () -> R6(client)),
+                EvaluationTrace.values("age", client.getAge(), "limit", 70)));
+        ListReturn.add(trace.rule("R7", () -> ruleMetrics.record("R7", () -> historyCountService.R7Complete(context, older, amount)),
+                EvaluationTrace.values("older", older, "amount", amount)));
+        return ListReturn;
+    }
 
-}
+    /**
+     * Evaluates several credit applications at once. The clients missing from the cache are loaded with one IN query and their
+     * histories with one grouped query, then the rules of Rcomplete run in memory.
+     *
+     * @param inputs The parameters of each evaluation, at most evaluation.batch.max-size.
+     * @return The results of Rcomplete in the same order as the inputs, null for clients that do not exist.
+     * @throws IllegalArgumentException If the batch has more evaluations than the maximum.
+     */
+    @Transactional(readOnly = true)
+    public List<List<Boolean>> RcompleteBatch(List<EvaluationInput> inputs) {
+        if (inputs.size() > maxBatchSize) {
+            throw new IllegalArgumentException("The batch has " + inputs.size() + " evaluations, the maximum is " + maxBatchSize + ".");
+        }
+        Set<Long> clientIds = new HashSet<>();
+        for (EvaluationInput input : inputs) {
+            clientIds.add(input.getClientId());
+        }
 
+        Map<Long, ClientEntity> clients = clientCache.getAll(clientIds);
+        Map<Long, SavingsSnapshot> snapshots = historyCountService.getSavingsSnapshots(clients.keySet());
 
+        List<List<Boolean>> results = new ArrayList<>();
+        for (EvaluationInput input : inputs) {
+            ClientEntity client = clients.get(input.getClientId());
+            if (client == null) {
+                results.add(null);
+                continue;
+            }
+            EvaluationContext context = new EvaluationContext(input.getClientId(), client);
+            context.setSavingsSnapshot(snapshots.get(input.getClientId()));
+            results.add(Rcomplete(context, input.getType(), input.getLoan(), input.getDebt(), input.getAmount(),
+                    input.getOlder(), input.getTermYears(), input.getAnnualInterest()));
+        }
+        return results;
+    }
+
+}
@@ -0,0 +1,63 @@
+package backend.backend.Service;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.jdbc.DataSourceUnwrapper;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+@Component
+
+public class ConnectionPoolSizing implements BeanPostProcessor {
+    // Sets the size of the HikariCP pool of this replica. Every replica shares the same PostgreSQL host, so the
+    // connections that it can serve efficiently (2 * cores + 1) are split between the replicas, after leaving one
+    // for the LISTEN connection that each replica opens outside the pool. A replica never gets more than
+    // 2 * its own cores + 1, more connections would only wait for its CPU.
+
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPoolSizing.class);
+    static final int MIN_POOL_SIZE = 2;
+
+    private final int maxSize;
+    private final int replicas;
+    private final int databaseCores;
+
+    public ConnectionPoolSizing(@Value("${db.pool.max-size:0}") int maxSize,
+                                @Value("${db.pool.replicas:1}") int replicas,
+                                @Value("${db.pool.database-cores:8}") int databaseCores) {
+        this.maxSize = maxSize;
+        this.replicas = replicas;
+        this.databaseCores = databaseCores;
+    }
+
+    /**
+     * Size of the pool of one replica.
+     *
+     * @param replicas      The number of replicas using the database.
+     * @param databaseCores The CPU cores of the PostgreSQL host.
+     * @param localCpus     The CPUs available to this replica.
+     * @return The maximum number of connections of the pool, at least MIN_POOL_SIZE.
+     */
+    public static int poolSize(int replicas, int databaseCores, int localCpus) {
+        int perReplica = (2 * databaseCores + 1 - replicas) / Math.max(replicas, 1);
+        return Math.max(MIN_POOL_SIZE, Math.min(perReplica, 2 * localCpus + 1));
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        // The DataSource may already be wrapped by SlowQueryDataSourceProxy
+        HikariDataSource dataSource = bean instanceof DataSource
+                ? DataSourceUnwrapper.unwrap((DataSource) bean, HikariConfigMXBean.class, HikariDataSource.class) : null;
+        if (dataSource != null) {
+            int size = maxSize > 0 ? maxSize : poolSize(replicas, databaseCores, Runtime.getRuntime().availableProcessors());
+            dataSource.setMaximumPoolSize(size);
+            log.info("Connection pool {} sized to {} connections ({} replicas, {} database cores)",
+                    dataSource.getPoolName(), size, replicas, databaseCores);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,29 @@
+package backend.backend.Service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(name = "documents.migrate", havingValue = "true")
+
+public class DocumentMigrationRunner implements ApplicationRunner {
+    // Command that moves the PDFs stored in the Request table to the DocumentStore when the application starts:
+    // java -jar backend.jar --documents.migrate=true
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentMigrationRunner.class);
+
+    @Autowired
+    private RequestService requestService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        log.info("Moving request PDFs to the document store");
+        int migrated = requestService.migrateLegacyDocuments();
+        log.info("Moved {} request PDFs to the document store", migrated);
+    }
+}
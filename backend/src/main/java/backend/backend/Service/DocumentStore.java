@@ -0,0 +1,31 @@
+package backend.backend.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public interface DocumentStore {
+    // Storage of the request PDFs outside the database. Documents are addressed by the SHA-256 of their
+    // content, so saving the same file twice keeps a single copy.
+
+    /**
+     * Saves a document reading the stream until the end.
+     *
+     * @param content The content of the document.
+     * @return The hash and size of the saved document.
+     */
+    StoredDocument save(InputStream content) throws IOException;
+
+    // true if a document with that hash is stored
+    boolean exists(String hash);
+
+    /**
+     * Copies a range of a stored document to the output.
+     *
+     * @param hash   The hash of the document.
+     * @param offset The first byte to copy.
+     * @param length The number of bytes to copy.
+     * @param output Where the bytes are written.
+     */
+    void copy(String hash, long offset, long length, OutputStream output) throws IOException;
+}
@@ -0,0 +1,45 @@
+package backend.backend.Service;
+
+import backend.backend.Entity.ClientEntity;
+
+public class EvaluationContext {
+    // Data shared by all the rules of one credit evaluation (P4). The client is loaded once when the
+    // context is created and the savings history the first time R7 needs it.
+
+    private final long clientId;
+    private final ClientEntity client;
+    private final EvaluationTrace trace;
+    private SavingsSnapshot savingsSnapshot;
+
+    public EvaluationContext(long clientId, ClientEntity client) {
+        this(clientId, client, null);
+    }
+
+    public EvaluationContext(long clientId, ClientEntity client, EvaluationTrace trace) {
+        this.clientId = clientId;
+        this.client = client;
+        this.trace = trace;
+    }
+
+    public long getClientId() {
+        return clientId;
+    }
+
+    // The client of the evaluation, null if it does not exist
+    public ClientEntity getClient() {
+        return client;
+    }
+
+    // The trace of the evaluation, null when it was not requested
+    public EvaluationTrace getTrace() {
+        return trace;
+    }
+
+    public SavingsSnapshot getSavingsSnapshot() {
+        return savingsSnapshot;
+    }
+
+    public void setSavingsSnapshot(SavingsSnapshot savingsSnapshot) {
+        this.savingsSnapshot = savingsSnapshot;
+    }
+}
@@ -0,0 +1,22 @@
+package backend.backend.Service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+
+public class EvaluationInput {
+    // Parameters of one credit evaluation (the same ones received by /Client/P4)
+
+    private long clientId;
+    private int type;
+    private int loan;
+    private int debt;
+    private int amount;
+    private int older;
+    private int termYears;
+    private double annualInterest;
+}
@@ -0,0 +1,61 @@
+package backend.backend.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Supplier;
+
+@Component
+
+public class EvaluationResultCache implements MeterBinder {
+    // Results of Rcomplete for the same client and parameters. The key includes the version of the client row,
+    // the number of movements of its history and the current day (the R7 windows move with the date), so a new
+    // movement or an update of the client makes the old results unreachable without having to look for them.
+    // The hit ratio is published as evaluation.cache.hit.ratio, the hits and misses as cache.gets{cache=evaluations}.
+
+    private final boolean enabled;
+    private final Cache<Key, List<Boolean>> results;
+
+    public EvaluationResultCache(@Value("${evaluation.cache.enabled:true}") boolean enabled,
+                                 @Value("${evaluation.cache.max-size:10000}") long maxSize,
+                                 @Value("${evaluation.cache.ttl-seconds:600}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.results = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Cached result of the evaluation, computed with evaluation if it is not there
+    public List<Boolean> get(EvaluationInput input, long clientVersion, long historyVersion, Supplier<List<Boolean>> evaluation) {
+        Key key = new Key(input, clientVersion, historyVersion, LocalDate.now().toEpochDay());
+        return results.get(key, ignored -> List.copyOf(evaluation.get()));
+    }
+
+    public double hitRatio() {
+        return results.stats().hitRate();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, results, "evaluations");
+        Gauge.builder("evaluation.cache.hit.ratio", this, EvaluationResultCache::hitRatio).register(registry);
+    }
+
+    private record Key(EvaluationInput input, long clientVersion, long historyVersion, long epochDay) {
+    }
+}
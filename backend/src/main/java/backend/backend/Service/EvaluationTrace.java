@@ -0,0 +1,68 @@
+package backend.backend.Service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+public class EvaluationTrace {
+    // Detail of one traced evaluation (P4 with trace=true): the queries that ran with the rows they returned and
+    // each rule with its time, its result and the values it compared. Only created when a trace is requested,
+    // the normal evaluations never touch it.
+
+    private final long startNanos = System.nanoTime();
+    private final List<Step> steps = new ArrayList<>();
+    private List<Boolean> results;
+    private double totalMs;
+
+    // Records a query that started at startNanos
+    public void query(String name, long startNanos, int rows, Map<String, Object> values) {
+        steps.add(new Step("query", name, millisSince(startNanos), null, rows, values));
+    }
+
+    // Runs the rule and records its time, result and the values it used
+    public boolean rule(String name, BooleanSupplier rule, Map<String, Object> values) {
+        long start = System.nanoTime();
+        boolean result = rule.getAsBoolean();
+        steps.add(new Step("rule", name, millisSince(start), result, null, values));
+        return result;
+    }
+
+    // Closes the trace with the results of the evaluation
+    public void finish(List<Boolean> results) {
+        this.results = results;
+        this.totalMs = millisSince(startNanos);
+    }
+
+    public List<Boolean> getResults() {
+        return results;
+    }
+
+    public double getTotalMs() {
+        return totalMs;
+    }
+
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    // Values of a step in the given order: values("salary", 1000, "ratio", 0.3)
+    public static Map<String, Object> values(Object... keysAndValues) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            values.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return values;
+    }
+
+    private static double millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1e6;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Step(String kind, String name, double ms, Boolean result, Integer rows, Map<String, Object> values) {
+    }
+}
@@ -0,0 +1,128 @@
+package backend.backend.Service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+@Component
+
+public class FileSystemDocumentStore implements DocumentStore {
+    // DocumentStore on a local (or shared) directory. Each document is written to a temporary file, flushed
+    // to disk and then renamed to <root>/<first 2 chars of the hash>/<hash>, so readers never see a file
+    // that is only partially written. The replicas must mount the same directory.
+
+    private static final Pattern SHA_256 = Pattern.compile("[0-9a-f]{64}");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path root;
+
+    public FileSystemDocumentStore(@Value("${documents.store.path:./documents}") String root) {
+        this.root = Paths.get(root).toAbsolutePath();
+    }
+
+    @Override
+    public StoredDocument save(InputStream content) throws IOException {
+        Path tmpDir = root.resolve("tmp");
+        Files.createDirectories(tmpDir);
+        Path tmpFile = Files.createTempFile(tmpDir, "upload-", ".part");
+        try {
+            MessageDigest digest = sha256();
+            long size = 0;
+            try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.WRITE)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = content.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+                    while (data.hasRemaining()) {
+                        channel.write(data);
+                    }
+                    size += read;
+                }
+                channel.force(true);
+            }
+
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path target = pathOf(hash);
+            if (Files.exists(target)) {
+                // Same content already stored
+                return new StoredDocument(hash, size);
+            }
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(tmpFile, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // Another replica stored the same document at the same time
+                return new StoredDocument(hash, size);
+            }
+            syncDirectory(target.getParent());
+            return new StoredDocument(hash, size);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    @Override
+    public boolean exists(String hash) {
+        return SHA_256.matcher(hash).matches() && Files.exists(pathOf(hash));
+    }
+
+    @Override
+    public void copy(String hash, long offset, long length, OutputStream output) throws IOException {
+        if (!exists(hash)) {
+            throw new FileNotFoundException("Document " + hash + " is not stored.");
+        }
+        try (FileChannel channel = FileChannel.open(pathOf(hash), StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(output);
+            long position = offset;
+            long remaining = length;
+            while (remaining > 0) {
+                long copied = channel.transferTo(position, remaining, target);
+                if (copied <= 0) {
+                    break;
+                }
+                position += copied;
+                remaining -= copied;
+            }
+        }
+    }
+
+    private Path pathOf(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    // Makes the rename durable, not every file system allows opening a directory so errors are ignored
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // The file itself was already forced to disk
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package backend.backend.Service;
+
+import backend.backend.Entity.HistoryCountEntity;
+import backend.backend.Repository.ClientSavingsRepository;
+import backend.backend.Repository.HistoryCountRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+
+public class HistoryCountIngestService {
+    // Bulk load of movements from the core-banking export. The input is read line by line, so its size does not
+    // matter, and saved in batches of history.ingest.batch-size rows, each batch in its own transaction together
+    // with the update of the savings aggregates of its clients. A line that cannot be parsed is reported and
+    // skipped; if a batch fails all of its lines are reported and the load goes on with the next one.
+
+    public enum Format { NDJSON, CSV }
+
+    @Autowired
+    private HistoryCountRepository historyCountRepository;
+
+    @Autowired
+    private ClientSavingsRepository clientSavingsRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${history.ingest.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Loads the movements of the input. Each line is one movement with clientid, change and changeDate:
+     * a JSON object for NDJSON, or "clientid,change,changeDate" for CSV (an optional header line is skipped).
+     * The date can be an ISO date-time, "yyyy-MM-dd HH:mm:ss", a date or epoch milliseconds.
+     *
+     * @return The number of rows inserted, the rows per second and the errors by line number.
+     */
+    public IngestReport ingest(Reader input, Format format) throws IOException {
+        long start = System.nanoTime();
+        IngestReport report = new IngestReport();
+        List<HistoryCountEntity> batch = new ArrayList<>(batchSize);
+        List<Long> batchLines = new ArrayList<>(batchSize);
+
+        BufferedReader reader = new BufferedReader(input, 64 * 1024);
+        String line;
+        long lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || (format == Format.CSV && lineNumber == 1 && line.trim().toLowerCase().startsWith("clientid"))) {
+                continue;
+            }
+            try {
+                batch.add(format == Format.CSV ? parseCsv(line) : parseJson(line));
+                batchLines.add(lineNumber);
+            } catch (IllegalArgumentException e) {
+                report.addError(lineNumber, e.getMessage());
+            }
+            if (batch.size() >= batchSize) {
+                save(batch, batchLines, report);
+            }
+        }
+        save(batch, batchLines, report);
+
+        report.setLines(lineNumber);
+        report.setSeconds((System.nanoTime() - start) / 1e9);
+        report.setRowsPerSecond(report.getSeconds() > 0 ? report.getInserted() / report.getSeconds() : 0);
+        return report;
+    }
+
+    private void save(List<HistoryCountEntity> batch, List<Long> batchLines, IngestReport report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                historyCountRepository.saveAll(batch);
+                applySavings(batch);
+                // The saved movements are not needed anymore, keep the persistence context small
+                entityManager.flush();
+                entityManager.clear();
+            });
+            report.setInserted(report.getInserted() + batch.size());
+        } catch (RuntimeException e) {
+            for (Long line : batchLines) {
+                report.addError(line, "Batch failed: " + e.getMessage());
+            }
+        }
+        batch.clear();
+        batchLines.clear();
+    }
+
+    // One update of the aggregates per client of the batch
+    private void applySavings(List<HistoryCountEntity> batch) {
+        Map<Long, long[]> changes = new HashMap<>();
+        Map<Long, Timestamp> lastDates = new HashMap<>();
+        for (HistoryCountEntity movement : batch) {
+            long[] change = changes.computeIfAbsent(movement.getClientid(), id -> new long[2]);
+            change[0] += movement.getChange();
+            change[1]++;
+            lastDates.merge(movement.getClientid(), movement.getChangeDate(), (a, b) -> a.after(b) ? a : b);
+        }
+        for (Map.Entry<Long, long[]> entry : changes.entrySet()) {
+            clientSavingsRepository.applyMovements(entry.getKey(), entry.getValue()[0], entry.getValue()[1],
+                    lastDates.get(entry.getKey()));
+        }
+    }
+
+    private HistoryCountEntity parseJson(String line) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(line);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid JSON: " + e.getOriginalMessage());
+        }
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        return movement(text(node, "clientid"), text(node, "change"), text(node, "changeDate"));
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    private static HistoryCountEntity parseCsv(String line) {
+        String[] fields = line.split(",", -1);
+        if (fields.length != 3) {
+            throw new IllegalArgumentException("Expected 3 fields: clientid,change,changeDate");
+        }
+        return movement(fields[0].trim(), fields[1].trim(), fields[2].trim());
+    }
+
+    private static HistoryCountEntity movement(String clientid, String change, String changeDate) {
+        if (clientid == null || change == null || changeDate == null || changeDate.isEmpty()) {
+            throw new IllegalArgumentException("clientid, change and changeDate are required");
+        }
+        HistoryCountEntity movement = new HistoryCountEntity();
+        try {
+            movement.setClientid(Long.parseLong(clientid));
+            movement.setChange(Integer.parseInt(change));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + e.getMessage());
+        }
+        if (movement.getClientid() <= 0) {
+            throw new IllegalArgumentException("Invalid clientid: " + clientid);
+        }
+        movement.setChangeDate(parseDate(changeDate));
+        return movement;
+    }
+
+    private static Timestamp parseDate(String value) {
+        try {
+            if (value.chars().allMatch(Character::isDigit)) {
+                return new Timestamp(Long.parseLong(value));
+            }
+            if (value.length() == 10) {
+                return Timestamp.valueOf(LocalDate.parse(value).atStartOfDay());
+            }
+            return Timestamp.valueOf(LocalDateTime.parse(value.replace(' ', 'T')));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid changeDate: " + value);
+        }
+    }
+}
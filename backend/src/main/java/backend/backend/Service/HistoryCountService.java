@@ -2,36 +2,87 @@ package backend.backend.Service;
 
 import backend.backend.Entity.ClientEntity;
 import backend.backend.Entity.HistoryCountEntity;
-import backend.backend.Repository.ClientRepository;
+import backend.backend.Repository.ClientSavingsRepository;
 import backend.backend.Repository.HistoryCountRepository;
+import backend.backend.Repository.HistorySnapshotRepository;
+import backend.backend.Repository.SavingsSummary;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
 
 public class HistoryCountService {
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 500;
+
     @Autowired
     HistoryCountRepository historyCountRepository;
 
     @Autowired
-    ClientRepository clientRepository;
+    ClientSavingsRepository clientSavingsRepository;
+
+    @Autowired
+    HistorySnapshotRepository historySnapshotRepository;
+
+    @Autowired
+    ClientCache clientCache;
+
+    @Autowired
+    RuleMetrics ruleMetrics;
 
 
+    // El movimiento y el saldo del cliente se guardan en la misma transaccion
+    @Transactional
     public HistoryCountEntity addHistoryCount(HistoryCountEntity historyCountEntity) {
 
         if (historyCountEntity == null) {
             throw new IllegalArgumentException("El parámetro historyCount no puede ser null.");
         }
-        return historyCountRepository.save(historyCountEntity);
+        HistoryCountEntity saved = historyCountRepository.save(historyCountEntity);
+        clientSavingsRepository.applyMovements(saved.getClientid(), saved.getChange(), 1, saved.getChangeDate());
+        return saved;
+    }
+
+    /**
+     * Recomputes the savings aggregates of every client from the raw history, to repair them after the
+     * history was changed outside addHistoryCount. The aggregates are locked for the whole rebuild, so
+     * addHistoryCount waits for it instead of creating a row between the delete and the insert.
+     *
+     * @return The number of clients with aggregates.
+     */
+    @Transactional
+    public int rebuildSavings() {
+        clientSavingsRepository.lockSavings();
+        clientSavingsRepository.deleteAllSavings();
+        return clientSavingsRepository.insertAllSavingsFromHistory();
+    }
+
+    // Same as rebuildSavings for a single client
+    @Transactional
+    public void rebuildSavings(long clientId) {
+        clientSavingsRepository.lockSavings();
+        clientSavingsRepository.deleteSavings(clientId);
+        clientSavingsRepository.insertSavingsFromHistory(clientId);
+    }
+
+    // Balance of the savings account of a client, read from the aggregates. Clients without aggregates fall back
+    // to summing the history so a missing row never changes the result of the rules.
+    public int getBalance(long clientId) {
+        return clientSavingsRepository.findSummaryById(clientId)
+                .map(savings -> (int) savings.getBalance())
+                .orElseGet(() -> (int) historyCountRepository.sumChangeByClientid(clientId));
     }
 
     public HistoryCountEntity getHistoryCount(Long id) {
@@ -44,13 +95,102 @@ public class HistoryCountService {
     }
 
 
-    public boolean R71 (long clientId, int amount){
-        List<HistoryCountEntity> historyCounts = historyCountRepository.findAllByClientid(clientId);
-        int sum = 0;
-        for (HistoryCountEntity historyCount : historyCounts) {
-            int change = historyCount.getChange();
-            sum += change;
+    // Number of movements of the client, changes with every new movement
+    public long getHistoryVersion(long clientId) {
+        return clientSavingsRepository.findSummaryById(clientId)
+                .map(SavingsSummary::getMovementCount)
+                .orElse(0L);
+    }
+
+    /**
+     * Page of the movements of a client, from the newest to the oldest.
+     *
+     * @param clientId   The ID of the client.
+     * @param beforeDate The date of the last movement of the previous page, null for the first page or when that
+     *                   movement has no date.
+     * @param beforeId   The id of the last movement of the previous page, 0 for the first page.
+     * @param limit      The maximum number of movements, see pageSize.
+     * @return The movements older than the cursor.
+     */
+    @Transactional(readOnly = true)
+    public List<HistoryCountEntity> getHistoryPage(long clientId, Timestamp beforeDate, long beforeId, int limit) {
+        PageRequest page = PageRequest.of(0, pageSize(limit));
+        if (beforeDate != null) {
+            return historyCountRepository.findPageByClientidBefore(clientId, beforeDate, beforeId, page);
+        }
+        if (beforeId > 0) {
+            return historyCountRepository.findPageByClientidBeforeUndated(clientId, beforeId, page);
         }
+        return historyCountRepository.findFirstPageByClientid(clientId, page);
+    }
+
+    // Number of movements returned by getHistoryPage for the requested limit, a shorter page is the last one
+    public static int pageSize(int limit) {
+        if (limit <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Builds the snapshot used by the R7 rules with two queries: the balance is read from the client aggregates and
+     * only the change and date of the movements of the last 12 months are read, older ones never leave the database.
+     *
+     * @param clientId The ID of the client.
+     * @return The snapshot of the savings account of the client.
+     */
+    @Transactional(readOnly = true)
+    public SavingsSnapshot getSavingsSnapshot(long clientId) {
+        int total = getBalance(clientId);
+        HistorySnapshot last12Months = historySnapshotRepository.findByClientidSince(clientId, windowStart(12));
+        return SavingsSnapshot.ofRecent(total, last12Months);
+    }
+
+    // Same as getSavingsSnapshot for several clients, with one query for the balances and one for the movements.
+    // Clients without movements get an empty snapshot.
+    @Transactional(readOnly = true)
+    public Map<Long, SavingsSnapshot> getSavingsSnapshots(Collection<Long> clientIds) {
+        if (clientIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        Map<Long, Integer> totals = new HashMap<>();
+        for (SavingsSummary savings : clientSavingsRepository.findSummariesByClientidIn(clientIds)) {
+            totals.put(savings.getClientid(), (int) savings.getBalance());
+        }
+        List<Long> withoutSavings = clientIds.stream().filter(id -> !totals.containsKey(id)).toList();
+        if (!withoutSavings.isEmpty()) {
+            for (Object[] row : historyCountRepository.sumChangeByClientidIn(withoutSavings)) {
+                totals.put((Long) row[0], ((Number) row[1]).intValue());
+            }
+        }
+        Map<Long, HistorySnapshot> historyByClient = historySnapshotRepository.findByClientidInSince(clientIds, windowStart(12));
+
+        Map<Long, SavingsSnapshot> snapshots = new HashMap<>();
+        for (Long clientId : clientIds) {
+            snapshots.put(clientId, SavingsSnapshot.ofRecent(totals.getOrDefault(clientId, 0),
+                    historyByClient.getOrDefault(clientId, HistorySnapshot.EMPTY)));
+        }
+        return snapshots;
+    }
+
+    /**
+     * First instant kept by filterObjectsLast12Months/filterObjectsLast6Months: those keep the movements whose
+     * local date is after the same day N months ago, that is, from the start of the following day.
+     *
+     * @param months The size of the window in months.
+     * @return The start of the window.
+     */
+    public static Timestamp windowStart(int months) {
+        return Timestamp.valueOf(LocalDate.now().minusMonths(months).plusDays(1).atStartOfDay());
+    }
+
+    // R71 y R74 solo usan el saldo, que se lee de los agregados sin recorrer el historial
+    public boolean R71 (long clientId, int amount){
+        return R71(SavingsSnapshot.ofRecent(getBalance(clientId), HistorySnapshot.EMPTY), amount);
+    }
+
+    public boolean R71 (SavingsSnapshot snapshot, int amount){
+        int sum = snapshot.getTotal();
         double tenPercent = amount * 0.1;
         if (sum >= tenPercent) {
             return true;
@@ -59,22 +199,21 @@ public class HistoryCountService {
     }
 
     public boolean R72 (long clientId){
-        List<HistoryCountEntity> historyCounts = historyCountRepository.findAllByClientid(clientId);
-        int totalOfMoney = 0;
-        for (HistoryCountEntity historyCount : historyCounts) {
-            int change = historyCount.getChange();
-            totalOfMoney += change;
-        }
+        return R72(getSavingsSnapshot(clientId));
+    }
+
+    public boolean R72 (SavingsSnapshot snapshot){
+        int totalOfMoney = snapshot.getTotal();
 
         double halfOfMoneyAux =  (double) totalOfMoney / 2;
         int halfOfMoney = (int) halfOfMoneyAux;
 
 
 
-        List<HistoryCountEntity> newList = filterObjectsLast12Months(historyCounts);
+        HistorySnapshot newList = snapshot.getLast12Months();
         int sum = 0;
-        for (HistoryCountEntity historyCount : newList) {
-            int change = historyCount.getChange();
+        for (int i = 0; i < newList.size(); i++) {
+            int change = newList.change(i);
             if (change > halfOfMoney) {
                 return false;
             }
@@ -93,32 +232,30 @@ public class HistoryCountService {
     }
 
     public boolean R73(long clientId) {
-        // Obtener el historial de transacciones del cliente
-        List<HistoryCountEntity> historyCounts = historyCountRepository.findAllByClientid(clientId);
+        // Obtener el cliente actual
+        ClientEntity client = clientCache.get(clientId);
+        return R73(getSavingsSnapshot(clientId), client);
+    }
 
-        // Filtrar los objetos de los últimos 12 meses
-        List<HistoryCountEntity> newList = filterObjectsLast12Months(historyCounts);
+    public boolean R73(SavingsSnapshot snapshot, ClientEntity client) {
+        // Objetos de los últimos 12 meses
+        HistorySnapshot newList = snapshot.getLast12Months();
 
         boolean condition1 = false;
         int totalOfMoney = 0;
 
         // Calcular el total de dinero de los cambios positivos (depósitos)
-        for (HistoryCountEntity historyCount : newList) {
-            int change = historyCount.getChange();
+        for (int i = 0; i < newList.size(); i++) {
+            int change = newList.change(i);
             if (change > 0) {
                 totalOfMoney += change;
             }
         }
 
-        // Obtener el cliente actual
-        Optional<ClientEntity> clientOpt = Optional.ofNullable(clientRepository.findById(clientId)); // Cambiado a Optional
-
         // Verificar si el cliente está presente
-        if (clientOpt.isPresent()) {
-            ClientEntity clientActualy = clientOpt.get(); // Obtener el cliente
-
+        if (client != null) {
             // Obtener el salario del cliente actual
-            int Money = clientActualy.getSalary();
+            int Money = client.getSalary();
 
             // Verificar la primera condición (si el total de dinero es al menos el 5% del salario)
             if (totalOfMoney >= Money * 0.05) {
@@ -138,12 +275,11 @@ public class HistoryCountService {
 
 
     public boolean R74(long clientId, int older, int amount) {
-        List<HistoryCountEntity> historyCounts = historyCountRepository.findAllByClientid(clientId);
-        int sum = 0;
-        for (HistoryCountEntity historyCount : historyCounts) {
-            int change = historyCount.getChange();
-            sum += change;
-        }
+        return R74(SavingsSnapshot.ofRecent(getBalance(clientId), HistorySnapshot.EMPTY), older, amount);
+    }
+
+    public boolean R74(SavingsSnapshot snapshot, int older, int amount) {
+        int sum = snapshot.getTotal();
         if (older >= 2 ){
             if(sum > amount*0.1){
                 return true;
@@ -160,15 +296,14 @@ public class HistoryCountService {
         return false;
     }
     public boolean R75 (long clientId ) {
-        List<HistoryCountEntity> historyCounts = historyCountRepository.findAllByClientid(clientId);
-        int sum = 0;
-        for (HistoryCountEntity historyCount : historyCounts) {
-            int change = historyCount.getChange();
-            sum += change;
-        }
-        List<HistoryCountEntity> newList = filterObjectsLast6Months(historyCounts);
-        for(HistoryCountEntity historyCount : newList){
-            int change = historyCount.getChange();
+        return R75(getSavingsSnapshot(clientId));
+    }
+
+    public boolean R75 (SavingsSnapshot snapshot) {
+        int sum = snapshot.getTotal();
+        HistorySnapshot newList = snapshot.getLast6Months();
+        for (int i = 0; i < newList.size(); i++) {
+            int change = newList.change(i);
             if(change < 0  ){
                 change = change * -1;
                 if( change >= sum *0.3){
@@ -182,12 +317,80 @@ public class HistoryCountService {
 
 
 
+    @Transactional(readOnly = true)
     public boolean R7Complete(long clientId, int older, int amount) {
-        boolean condition1 = R71(clientId,amount);
-        boolean condition2 = R72(clientId);
-        boolean condition3 = R73(clientId);
-        boolean condition4 = R74(clientId, older, amount);
-        boolean condition5 = R75(clientId);
+        // The history is read once and shared by the five rules, only the last 12 months are loaded
+        SavingsSnapshot snapshot = getSavingsSnapshot(clientId);
+        ClientEntity client = clientCache.get(clientId);
+        return R7Complete(snapshot, client, older, amount);
+    }
+
+    @Transactional(readOnly = true)
+    public boolean R7Complete(EvaluationContext context, int older, int amount) {
+        if (context.getTrace() != null) {
+            return R7CompleteTraced(context, older, amount);
+        }
+        // Reuse the client already loaded by the evaluation and keep the snapshot for later readers
+        SavingsSnapshot snapshot = context.getSavingsSnapshot();
+        if (snapshot == null) {
+            snapshot = getSavingsSnapshot(context.getClientId());
+            context.setSavingsSnapshot(snapshot);
+        }
+        return R7Complete(snapshot, context.getClient(), older, amount);
+    }
+
+    // R7Complete recording the queries and each of R71-R75 in the trace of the context
+    private boolean R7CompleteTraced(EvaluationContext context, int older, int amount) {
+        EvaluationTrace trace = context.getTrace();
+        SavingsSnapshot loaded = context.getSavingsSnapshot();
+        if (loaded == null) {
+            long start = System.nanoTime();
+            int total = getBalance(context.getClientId());
+            trace.query("savings balance", start, 1, EvaluationTrace.values("balance", total));
+            start = System.nanoTime();
+            Timestamp since = windowStart(12);
+            HistorySnapshot last12Months = historySnapshotRepository.findByClientidSince(context.getClientId(), since);
+            trace.query("history since", start, last12Months.size(), EvaluationTrace.values("since", since.toString()));
+            loaded = SavingsSnapshot.ofRecent(total, last12Months);
+            context.setSavingsSnapshot(loaded);
+        }
+        SavingsSnapshot snapshot = loaded;
+        ClientEntity client = context.getClient();
+        int balance = snapshot.getTotal();
+
+        int deposits = 0;
+        HistorySnapshot last12Months = snapshot.getLast12Months();
+        for (int i = 0; i < last12Months.size(); i++) {
+            deposits += Math.max(last12Months.change(i), 0);
+        }
+        int largestWithdrawal = 0;
+        HistorySnapshot last6Months = snapshot.getLast6Months();
+        for (int i = 0; i < last6Months.size(); i++) {
+            largestWithdrawal = Math.max(largestWithdrawal, -last6Months.change(i));
+        }
+
+        boolean condition1 = trace.rule("R71", () -> ruleMetrics.record("R71", () -> R71(snapshot, amount)),
+                EvaluationTrace.values("balance", balance, "required", amount * 0.1));
+        boolean condition2 = trace.rule("R72", () -> ruleMetrics.record("R72", () -> R72(snapshot)),
+                EvaluationTrace.values("balance", balance, "half", balance / 2, "movements", last12Months.size()));
+        QuarterCoverage coverage = QuarterCoverage.of(last12Months);
+        boolean condition3 = trace.rule("R73", () -> ruleMetrics.record("R73", () -> R73(snapshot, client)),
+                EvaluationTrace.values("deposits", deposits, "required", client == null ? null : client.getSalary() * 0.05,
+                        "quarterlyDeposits", coverage.everyYearHasDeposits(),
+                        "missingQuarters", coverage.missingQuarters(windowStart(12).toLocalDateTime().toLocalDate(), LocalDate.now())));
+        boolean condition4 = trace.rule("R74", () -> ruleMetrics.record("R74", () -> R74(snapshot, older, amount)),
+                EvaluationTrace.values("balance", balance, "older", older, "required", amount * (older >= 2 ? 0.1 : 0.2)));
+        boolean condition5 = trace.rule("R75", () -> ruleMetrics.record("R75", () -> R75(snapshot)),
+                EvaluationTrace.values("balance", balance, "largestWithdrawal", largestWithdrawal, "limit", balance * 0.3));
+        return condition1 && condition2 && condition3 && condition4 && condition5;
+    }
+
+    public boolean R7Complete(SavingsSnapshot snapshot, ClientEntity client, int older, int amount) {
+        boolean condition1 = ruleMetrics.record("R71", () -> R71(snapshot, amount));
+        boolean condition2 = ruleMetrics.record("R72", () -> R72(snapshot));
+        boolean condition3 = ruleMetrics.record("R73", () -> R73(snapshot, client));
+        boolean condition4 = ruleMetrics.record("R74", () -> R74(snapshot, older, amount));
+        boolean condition5 = ruleMetrics.record("R75", () -> R75(snapshot));
         if (condition1 && condition2 && condition3 && condition4 && condition5) {
             return true;
         }
@@ -211,25 +414,12 @@ public class HistoryCountService {
 
     // Función para verificar si se realizaron depósitos trimestrales
     public boolean hasQuarterlyDeposits(List<HistoryCountEntity> transactions) {
-        // Filtrar los depósitos (Change > 0) y agrupar por año y trimestre
-        Map<Integer, Map<Integer, List<HistoryCountEntity>>> depositsByQuarter = transactions.stream()
-                .filter(transaction -> transaction.getChange() > 0)  // Filtrar los depósitos
-                .collect(Collectors.groupingBy(transaction -> {
-                    LocalDate changeDate = transaction.getChangeDate().toInstant()
-                            .atZone(ZoneId.systemDefault())
-                            .toLocalDate();
-                    return changeDate.getYear(); // Agrupar por año
-                }, Collectors.groupingBy(transaction -> {
-                    LocalDate changeDate = transaction.getChangeDate().toInstant()
-                            .atZone(ZoneId.systemDefault())
-                            .toLocalDate();
-                    int month = changeDate.getMonthValue();
-                    return (month - 1) / 3 + 1;  // Agrupar por trimestre
-                })));
+        // Trimestres con depósitos de cada año, calculados en una sola pasada
+        return QuarterCoverage.of(transactions).everyYearHasDeposits();
+    }
 
-        // Verificar si hay al menos un depósito en cada trimestre del año
-        return depositsByQuarter.values().stream()
-                .allMatch(quarterMap -> quarterMap.size() >= 1);  // Verifica si cada trimestre tiene al menos 1 depósito
+    public boolean hasQuarterlyDeposits(HistorySnapshot transactions) {
+        return QuarterCoverage.of(transactions).everyYearHasDeposits();
     }
 
 
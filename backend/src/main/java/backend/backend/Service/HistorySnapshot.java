@@ -0,0 +1,112 @@
+package backend.backend.Service;
+
+import backend.backend.Entity.HistoryCountEntity;
+
+import java.util.Arrays;
+import java.util.List;
+
+public final class HistorySnapshot {
+    // Read-only copy of the two columns of a savings history used by the R7 rules, the change and the date of each
+    // movement, kept in parallel primitive arrays instead of managed HistoryCountEntity objects. A movement takes
+    // 12 bytes and the rules walk the arrays by index.
+
+    public static final HistorySnapshot EMPTY = new HistorySnapshot(new int[0], new long[0], 0);
+
+    private final int[] changes;
+    private final long[] epochMillis;
+    private final int size;
+
+    private HistorySnapshot(int[] changes, long[] epochMillis, int size) {
+        this.changes = changes;
+        this.epochMillis = epochMillis;
+        this.size = size;
+    }
+
+    // Snapshot of movements already loaded as entities, in the same order
+    public static HistorySnapshot of(List<HistoryCountEntity> historyCounts) {
+        Builder builder = new Builder(historyCounts.size());
+        for (HistoryCountEntity historyCount : historyCounts) {
+            builder.add(historyCount.getChange(), historyCount.getChangeDate() == null ? Long.MIN_VALUE
+                    : historyCount.getChangeDate().getTime());
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int change(int index) {
+        return changes[index];
+    }
+
+    // Date of the movement as milliseconds since the epoch, Long.MIN_VALUE when the movement has no date
+    public long epochMillis(int index) {
+        return epochMillis[index];
+    }
+
+    /**
+     * Movements made at or after an instant, in the same order.
+     *
+     * @param startMillis The start of the window, as returned by HistoryCountService.windowStart(...).getTime().
+     * @return This snapshot when every movement is inside the window, otherwise a copy with the movements inside.
+     */
+    public HistorySnapshot since(long startMillis) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (epochMillis[i] >= startMillis) {
+                kept++;
+            }
+        }
+        if (kept == size) {
+            return this;
+        }
+        int[] keptChanges = new int[kept];
+        long[] keptMillis = new long[kept];
+        int next = 0;
+        for (int i = 0; i < size; i++) {
+            if (epochMillis[i] >= startMillis) {
+                keptChanges[next] = changes[i];
+                keptMillis[next] = epochMillis[i];
+                next++;
+            }
+        }
+        return new HistorySnapshot(keptChanges, keptMillis, kept);
+    }
+
+    // Collects the movements of a history while it is read, growing the arrays as needed
+    public static final class Builder {
+        private int[] changes;
+        private long[] epochMillis;
+        private int size;
+
+        public Builder() {
+            this(16);
+        }
+
+        public Builder(int expectedSize) {
+            changes = new int[Math.max(expectedSize, 1)];
+            epochMillis = new long[changes.length];
+        }
+
+        public Builder add(int change, long epochMillis) {
+            if (size == changes.length) {
+                int capacity = changes.length + (changes.length >> 1) + 1;
+                changes = Arrays.copyOf(changes, capacity);
+                this.epochMillis = Arrays.copyOf(this.epochMillis, capacity);
+            }
+            changes[size] = change;
+            this.epochMillis[size] = epochMillis;
+            size++;
+            return this;
+        }
+
+        public HistorySnapshot build() {
+            return size == 0 ? EMPTY : new HistorySnapshot(changes, epochMillis, size);
+        }
+    }
+}
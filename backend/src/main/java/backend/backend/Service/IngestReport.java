@@ -0,0 +1,39 @@
+package backend.backend.Service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+
+public class IngestReport {
+    // Result of a bulk load of movements. Only the first MAX_ERRORS errors are kept, failed counts all of them.
+
+    public static final int MAX_ERRORS = 1000;
+
+    private long lines;
+    private long inserted;
+    private long failed;
+    private double seconds;
+    private double rowsPerSecond;
+    private List<LineError> errors = new ArrayList<>();
+
+    public void addError(long line, String message) {
+        failed++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(new LineError(line, message));
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LineError {
+        private long line;
+        private String message;
+    }
+}
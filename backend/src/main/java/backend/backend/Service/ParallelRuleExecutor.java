@@ -0,0 +1,116 @@
+package backend.backend.Service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+@Component
+
+public class ParallelRuleExecutor {
+    // Bounded pool used to run the independent parts of a credit evaluation at the same time.
+    // When the queue is full the caller runs the task itself, so a burst of evaluations slows down
+    // instead of failing.
+
+    private final boolean enabled;
+    private final long timeoutMs;
+    private final ThreadPoolExecutor executor;
+
+    public ParallelRuleExecutor(@Value("${evaluation.parallel.enabled:false}") boolean enabled,
+                                @Value("${evaluation.parallel.threads:8}") int threads,
+                                @Value("${evaluation.parallel.queue-capacity:100}") int queueCapacity,
+                                @Value("${evaluation.parallel.timeout-ms:5000}") long timeoutMs) {
+        this.enabled = enabled;
+        this.timeoutMs = timeoutMs;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "evaluation-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    // true if Rcomplete should run its rules in parallel
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Starts a task in the pool
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, executor);
+    }
+
+    /**
+     * Waits for every rule and returns the results in the same order.
+     * The first rule that fails cancels the wait and its exception is thrown to the caller.
+     *
+     * @param rules The futures of the rules.
+     * @return The result of each rule.
+     */
+    public List<Boolean> joinAll(List<CompletableFuture<Boolean>> rules) {
+        CompletableFuture<Void> all = CompletableFuture.allOf(rules.toArray(new CompletableFuture[0]));
+        for (CompletableFuture<Boolean> rule : rules) {
+            rule.whenComplete((result, error) -> {
+                if (error != null) {
+                    all.completeExceptionally(error);
+                }
+            });
+        }
+
+        try {
+            all.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            cancelAll(rules);
+            throw new IllegalStateException("Credit evaluation did not finish in " + timeoutMs + " ms", e);
+        } catch (ExecutionException e) {
+            cancelAll(rules);
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            cancelAll(rules);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Credit evaluation was interrupted", e);
+        }
+
+        List<Boolean> results = new ArrayList<>();
+        for (CompletableFuture<Boolean> rule : rules) {
+            results.add(rule.join());
+        }
+        return results;
+    }
+
+    private void cancelAll(List<CompletableFuture<Boolean>> rules) {
+        for (CompletableFuture<Boolean> rule : rules) {
+            rule.cancel(true);
+        }
+    }
+
+    private RuntimeException unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof RuntimeException) {
+            return (RuntimeException) error;
+        }
+        return new IllegalStateException(error);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
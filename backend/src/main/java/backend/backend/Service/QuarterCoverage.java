@@ -0,0 +1,138 @@
+package backend.backend.Service;
+
+import backend.backend.Entity.HistoryCountEntity;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class QuarterCoverage {
+    // Quarters of each year with at least one deposit, as a 4-bit mask per year (bit 0 = Q1 ... bit 3 = Q4).
+    // Built in one pass over epoch days without LocalDate objects or boxed maps; the dates are taken in the
+    // system time zone, like hasQuarterlyDeposits always did.
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private int firstYear;
+    // masks[i] is the mask of firstYear + i, 0 for years without deposits
+    private byte[] masks = new byte[0];
+
+    // Coverage of the deposits (change > 0) of the movements
+    public static QuarterCoverage of(List<HistoryCountEntity> movements) {
+        ZoneRules rules = ZoneId.systemDefault().getRules();
+        QuarterCoverage coverage = new QuarterCoverage();
+        for (HistoryCountEntity movement : movements) {
+            if (movement.getChange() > 0) {
+                coverage.addDeposit(epochDay(movement.getChangeDate(), rules));
+            }
+        }
+        return coverage;
+    }
+
+    // Same as of(List) for a columnar history
+    public static QuarterCoverage of(HistorySnapshot history) {
+        ZoneRules rules = ZoneId.systemDefault().getRules();
+        QuarterCoverage coverage = new QuarterCoverage();
+        for (int i = 0; i < history.size(); i++) {
+            if (history.change(i) > 0) {
+                coverage.addDeposit(epochDay(history.epochMillis(i), rules));
+            }
+        }
+        return coverage;
+    }
+
+    // Local day of the timestamp in the given zone, counted from 1970-01-01
+    public static long epochDay(Timestamp timestamp, ZoneRules rules) {
+        return epochDay(timestamp.getTime(), rules);
+    }
+
+    public static long epochDay(long millis, ZoneRules rules) {
+        int offsetSeconds = rules.isFixedOffset()
+                ? rules.getOffset(Instant.EPOCH).getTotalSeconds()
+                : rules.getOffset(Instant.ofEpochMilli(millis)).getTotalSeconds();
+        return Math.floorDiv(millis + offsetSeconds * 1000L, MILLIS_PER_DAY);
+    }
+
+    // Marks the quarter of the day as covered
+    public void addDeposit(long epochDay) {
+        int yearAndMonth = yearAndMonth(epochDay);
+        int year = yearAndMonth >> 4;
+        int quarter = ((yearAndMonth & 0xF) - 1) / 3;
+        ensureYear(year);
+        masks[year - firstYear] |= (byte) (1 << quarter);
+    }
+
+    // Mask of the quarters of the year with deposits
+    public int mask(int year) {
+        int index = year - firstYear;
+        return index < 0 || index >= masks.length ? 0 : masks[index];
+    }
+
+    /**
+     * The condition of hasQuarterlyDeposits: every year that has deposits has at least one quarter with
+     * deposits. It is true for any history (and for an empty one); kept as it was so R73 does not change.
+     */
+    public boolean everyYearHasDeposits() {
+        for (byte mask : masks) {
+            if (mask != 0 && Integer.bitCount(mask) < 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Quarters between the two dates, both included, without any deposit.
+     *
+     * @return The quarters as "2024-Q3", from the oldest to the newest.
+     */
+    public List<String> missingQuarters(LocalDate from, LocalDate to) {
+        List<String> missing = new ArrayList<>();
+        int year = from.getYear();
+        int quarter = (from.getMonthValue() - 1) / 3;
+        int lastYear = to.getYear();
+        int lastQuarter = (to.getMonthValue() - 1) / 3;
+        while (year < lastYear || (year == lastYear && quarter <= lastQuarter)) {
+            if ((mask(year) & (1 << quarter)) == 0) {
+                missing.add(year + "-Q" + (quarter + 1));
+            }
+            if (++quarter == 4) {
+                quarter = 0;
+                year++;
+            }
+        }
+        return missing;
+    }
+
+    private void ensureYear(int year) {
+        if (masks.length == 0) {
+            firstYear = year;
+            masks = new byte[1];
+        } else if (year < firstYear) {
+            byte[] grown = new byte[masks.length + firstYear - year];
+            System.arraycopy(masks, 0, grown, firstYear - year, masks.length);
+            masks = grown;
+            firstYear = year;
+        } else if (year - firstYear >= masks.length) {
+            masks = Arrays.copyOf(masks, year - firstYear + 1);
+        }
+    }
+
+    // Year and month (year << 4 | month) of an epoch day, with the civil calendar algorithm of H. Hinnant
+    static int yearAndMonth(long epochDay) {
+        long z = epochDay + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+        return year << 4 | month;
+    }
+}
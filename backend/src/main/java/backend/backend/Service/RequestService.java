@@ -2,51 +2,126 @@ package backend.backend.Service;
 
 import backend.backend.Entity.RequestEntity;
 import backend.backend.Repository.RequestRepository;
+import backend.backend.Repository.RequestSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.persistence.EntityNotFoundException;
-import jakarta.transaction.Transactional;
+import jakarta.persistence.OptimisticLockException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 
 @Service
 
 
 public class RequestService {
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 500;
+
     @Autowired
     private RequestRepository requestRepository;
 
+    @Autowired
+    private DocumentStore documentStore;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     public RequestEntity createRequest(String typeOfRequest, int stage, int Amount, int termYears, long clientId, byte[] pdfDocument) {
+        try {
+            if (pdfDocument == null) {
+                return createRequest(typeOfRequest, stage, Amount, termYears, clientId, (InputStream) null);
+            }
+            return createRequest(typeOfRequest, stage, Amount, termYears, clientId, new ByteArrayInputStream(pdfDocument));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Creates a request saving the PDF in the DocumentStore as a stream, the document is never held whole
+     * in memory and the table only keeps its hash and size.
+     *
+     * @param pdfStream The content of the PDF.
+     * @return The saved request.
+     */
+    public RequestEntity createRequest(String typeOfRequest, int stage, int Amount, int termYears, long clientId, InputStream pdfStream) throws IOException {
         RequestEntity request = new RequestEntity();
         request.setTypeOfRequest(typeOfRequest);
         request.setStage(stage);
         request.setClientId(clientId);
-        request.setPdfDocument(pdfDocument);
+        if (pdfStream != null) {
+            StoredDocument document = documentStore.save(pdfStream);
+            request.setDocumentHash(document.getHash());
+            request.setDocumentSize(document.getSize());
+            meterRegistry.summary("documents.upload.bytes").record(document.getSize());
+        }
         request.setAmount(Amount);
         request.setYearTerm(termYears);
 
         return requestRepository.save(request);
     }
 
+    // Cambia el Stage con un solo UPDATE, sin leer la solicitud ni su PDF
+    @Transactional
     public void updateStage(long requestId, int newStage) {
-        // Buscar la solicitud por ID
-        Optional<RequestEntity> requestOptional = requestRepository.findById(requestId);
-
-        if (requestOptional.isPresent()) {
-            RequestEntity request = requestOptional.get();
-            // Actualizar el Stage
-            request.setStage(newStage);
-            // Guardar los cambios en la base de datos
-            requestRepository.save(request);
-        } else {
+        int updated = requestRepository.updateStage(requestId, newStage);
+        if (updated == 0) {
             // Manejar el caso donde la solicitud no se encuentra
             throw new EntityNotFoundException("Request with ID " + requestId + " not found.");
         }
     }
 
+    /**
+     * Changes the stage only if the request still has the version the caller read.
+     *
+     * @param requestId       The ID of the request.
+     * @param newStage        The new stage.
+     * @param expectedVersion The version of the request known by the caller.
+     * @throws EntityNotFoundException  if the request does not exist.
+     * @throws OptimisticLockException  if someone else changed the request in the meantime.
+     */
+    @Transactional
+    public void updateStage(long requestId, int newStage, int expectedVersion) {
+        int updated = requestRepository.updateStageIfVersion(requestId, newStage, expectedVersion);
+        if (updated == 0) {
+            if (!requestRepository.existsById(requestId)) {
+                throw new EntityNotFoundException("Request with ID " + requestId + " not found.");
+            }
+            throw new OptimisticLockException("Request with ID " + requestId + " was modified by another user.");
+        }
+    }
+
+    /**
+     * Moves many requests to the same stage with a single UPDATE.
+     *
+     * @param requestIds The IDs of the requests.
+     * @param newStage   The new stage.
+     * @return The number of requests updated, IDs that do not exist are ignored.
+     */
+    @Transactional
+    public int updateStage(Collection<Long> requestIds, int newStage) {
+        if (requestIds.isEmpty()) {
+            return 0;
+        }
+        return requestRepository.updateStageBulk(requestIds, newStage);
+    }
+
     // Método para obtener la entidad por su ID
     public RequestEntity getRequestById(long id) {
         return requestRepository.findById(id)
@@ -68,8 +143,117 @@ public class RequestService {
         return requestRepository.findAll();
     }
 
+    /**
+     * Page of the requests without the PDF, ordered by id.
+     *
+     * @param afterId The last id of the previous page, 0 for the first page.
+     * @param limit   The maximum number of requests, at most MAX_PAGE_SIZE.
+     * @return The requests with an id greater than afterId.
+     */
+    @Transactional(readOnly = true)
+    public List<RequestSummary> getRequestSummaries(long afterId, int limit) {
+        return requestRepository.findSummariesAfter(afterId, PageRequest.of(0, pageSize(limit)));
+    }
+
+    // Página de las solicitudes de un cliente sin el PDF
+    @Transactional(readOnly = true)
+    public List<RequestSummary> getRequestSummariesByClientId(long clientId, long afterId, int limit) {
+        return requestRepository.findSummariesByClientIdAfter(clientId, afterId, PageRequest.of(0, pageSize(limit)));
+    }
+
+    // Number of requests returned by the listings for the requested limit, a shorter page is the last one
+    public static int pageSize(int limit) {
+        if (limit <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Size of the PDF of a request, without reading the document when the size was stored on creation.
+     *
+     * @param id The ID of the request.
+     * @return The size in bytes, 0 if the request has no document.
+     */
+    @Transactional
+    public long getPdfDocumentSize(long id) {
+        if (!requestRepository.existsById(id)) {
+            throw new EntityNotFoundException("Request with ID " + id + " not found.");
+        }
+        Long size = requestRepository.findDocumentSizeById(id);
+        if (size != null) {
+            return size;
+        }
+        // Solicitudes anteriores a documentSize
+        Blob pdf = requestRepository.findPdfDocumentById(id);
+        try {
+            return pdf == null ? 0 : pdf.length();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read the PDF of request " + id, e);
+        }
+    }
 
+    /**
+     * Copies a range of the PDF of a request to the output. Documents in the DocumentStore are copied
+     * without holding a database connection; legacy ones are read from the table inside one transaction.
+     *
+     * @param id     The ID of the request.
+     * @param offset The first byte to copy.
+     * @param length The number of bytes to copy.
+     * @param output Where the bytes are written.
+     */
+    public void writePdfDocument(long id, long offset, long length, OutputStream output) throws IOException {
+        String hash = requestRepository.findDocumentHashById(id);
+        if (hash != null) {
+            documentStore.copy(hash, offset, length, output);
+            meterRegistry.summary("documents.download.bytes").record(length);
+            return;
+        }
 
+        IOException error = transactionTemplate.execute(status -> {
+            Blob pdf = requestRepository.findPdfDocumentById(id);
+            if (pdf == null) {
+                throw new EntityNotFoundException("Request with ID " + id + " has no PDF.");
+            }
+            try (InputStream input = pdf.getBinaryStream(offset + 1, length)) {
+                input.transferTo(output);
+                return null;
+            } catch (SQLException e) {
+                return new IOException("Could not read the PDF of request " + id, e);
+            } catch (IOException e) {
+                return e;
+            }
+        });
+        if (error != null) {
+            throw error;
+        }
+        meterRegistry.summary("documents.download.bytes").record(length);
+    }
 
+    /**
+     * Moves the PDFs still stored in the Request table to the DocumentStore, one request per transaction
+     * so a failure leaves the already migrated ones in place and the command can be run again.
+     *
+     * @return The number of documents moved.
+     */
+    public int migrateLegacyDocuments() {
+        int migrated = 0;
+        for (Long id : requestRepository.findIdsWithLegacyDocument()) {
+            Integer moved = transactionTemplate.execute(status -> {
+                Blob pdf = requestRepository.findPdfDocumentById(id);
+                if (pdf == null) {
+                    return 0;
+                }
+                try (InputStream input = pdf.getBinaryStream()) {
+                    StoredDocument document = documentStore.save(input);
+                    return requestRepository.moveDocumentToStore(id, document.getHash(), document.getSize());
+                } catch (SQLException | IOException e) {
+                    throw new IllegalStateException("Could not migrate the PDF of request " + id, e);
+                }
+            });
+            migrated += moved == null ? 0 : moved;
+        }
+        return migrated;
+    }
 
 }
@@ -0,0 +1,58 @@
+package backend.backend.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+@Component
+
+public class RuleMetrics {
+    // Time of each credit rule, published as evaluation.rule{rule=R1..R7 or R71..R75, outcome=pass|fail|error}.
+    // The count of each timer is the number of evaluations with that result.
+
+    private final MeterRegistry registry;
+    private final Map<String, RuleTimers> timers = new ConcurrentHashMap<>();
+
+    public RuleMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    // Runs the rule and records how long it took and its result
+    public boolean record(String rule, BooleanSupplier evaluation) {
+        RuleTimers ruleTimers = timers.computeIfAbsent(rule, RuleTimers::new);
+        long start = System.nanoTime();
+        try {
+            boolean result = evaluation.getAsBoolean();
+            (result ? ruleTimers.pass : ruleTimers.fail).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (RuntimeException e) {
+            ruleTimers.error.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private class RuleTimers {
+        private final Timer pass;
+        private final Timer fail;
+        private final Timer error;
+
+        private RuleTimers(String rule) {
+            this.pass = timer(rule, "pass");
+            this.fail = timer(rule, "fail");
+            this.error = timer(rule, "error");
+        }
+
+        private Timer timer(String rule, String outcome) {
+            return Timer.builder("evaluation.rule")
+                    .description("Time to evaluate a credit rule")
+                    .tag("rule", rule)
+                    .tag("outcome", outcome)
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package backend.backend.Service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(name = "savings.rebuild", havingValue = "true")
+
+public class SavingsRebuildRunner implements ApplicationRunner {
+    // Command that recomputes the client_savings aggregates from the HistoryCount table when the application starts:
+    // java -jar backend.jar --savings.rebuild=true
+
+    private static final Logger log = LoggerFactory.getLogger(SavingsRebuildRunner.class);
+
+    @Autowired
+    private HistoryCountService historyCountService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        log.info("Rebuilding the savings aggregates from the history");
+        int clients = historyCountService.rebuildSavings();
+        log.info("Rebuilt the savings aggregates of {} clients", clients);
+    }
+}
@@ -0,0 +1,78 @@
+package backend.backend.Service;
+
+import backend.backend.Entity.HistoryCountEntity;
+
+import java.util.List;
+
+public class SavingsSnapshot {
+    // Snapshot of the savings account of a client, built from a single read of its history so the
+    // R71-R75 rules do not have to load the same movements once per rule.
+
+    // Sum of every movement of the client (current balance of the account)
+    private final int total;
+    // All the movements of the client, null when the snapshot was built only from the last 12 months
+    private final HistorySnapshot history;
+    // Movements made in the last 12 and 6 months, filtered the first time a rule asks for them
+    private HistorySnapshot last12Months;
+    private HistorySnapshot last6Months;
+
+    private SavingsSnapshot(int total, HistorySnapshot history, HistorySnapshot last12Months) {
+        this.total = total;
+        this.history = history;
+        this.last12Months = last12Months;
+    }
+
+    /**
+     * Builds the snapshot from the complete history of a client.
+     *
+     * @param history All the movements of the client.
+     * @return The snapshot with the balance of the account.
+     */
+    public static SavingsSnapshot of(HistorySnapshot history) {
+        int total = 0;
+        for (int i = 0; i < history.size(); i++) {
+            total += history.change(i);
+        }
+        return new SavingsSnapshot(total, history, null);
+    }
+
+    // Same as of(HistorySnapshot) for movements already loaded as entities
+    public static SavingsSnapshot of(List<HistoryCountEntity> historyCounts) {
+        return of(HistorySnapshot.of(historyCounts));
+    }
+
+    /**
+     * Builds the snapshot from the balance and the movements of the last 12 months, both computed by the database.
+     *
+     * @param total        The sum of every movement of the client.
+     * @param last12Months The movements since HistoryCountService.windowStart(12), in insertion order.
+     * @return The snapshot with the balance of the account.
+     */
+    public static SavingsSnapshot ofRecent(int total, HistorySnapshot last12Months) {
+        return new SavingsSnapshot(total, null, last12Months);
+    }
+
+    // Same as ofRecent(int, HistorySnapshot) for movements already loaded as entities
+    public static SavingsSnapshot ofRecent(int total, List<HistoryCountEntity> last12Months) {
+        return ofRecent(total, HistorySnapshot.of(last12Months));
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public HistorySnapshot getLast12Months() {
+        if (last12Months == null) {
+            last12Months = history.since(HistoryCountService.windowStart(12).getTime());
+        }
+        return last12Months;
+    }
+
+    public HistorySnapshot getLast6Months() {
+        if (last6Months == null) {
+            // The 6 month window is contained in the 12 month one, so there is no need to walk the whole history again
+            last6Months = getLast12Months().since(HistoryCountService.windowStart(6).getTime());
+        }
+        return last6Months;
+    }
+}
@@ -0,0 +1,47 @@
+package backend.backend.Service;
+
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+@Component
+
+public class SlowQueryDataSourceProxy implements BeanPostProcessor {
+    // Wraps the DataSource with datasource-proxy so every statement of the repositories, JdbcTemplate and Flyway
+    // goes through SlowQueryListener. Only the slow ones are written, the rest pay the proxy and a time check.
+    // The ResultSets are only proxied to count the rows of slow selects (db.slow-query.count-select-rows): that
+    // proxy runs on every next() and getter of every query, and tripled the bytes allocated by an evaluation over
+    // a history of 5000 movements (EvaluationAllocationTest), so it is off by default.
+
+    private final boolean enabled;
+    private final long thresholdMs;
+    private final int maxSqlLength;
+    private final boolean countSelectRows;
+
+    public SlowQueryDataSourceProxy(@Value("${db.slow-query.enabled:true}") boolean enabled,
+                                    @Value("${db.slow-query.threshold-ms:200}") long thresholdMs,
+                                    @Value("${db.slow-query.max-sql-length:2000}") int maxSqlLength,
+                                    @Value("${db.slow-query.count-select-rows:false}") boolean countSelectRows) {
+        this.enabled = enabled;
+        this.thresholdMs = thresholdMs;
+        this.maxSqlLength = maxSqlLength;
+        this.countSelectRows = countSelectRows;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!enabled || !(bean instanceof DataSource dataSource) || bean instanceof ProxyDataSource) {
+            return bean;
+        }
+        SlowQueryListener listener = new SlowQueryListener(thresholdMs, maxSqlLength, countSelectRows);
+        ProxyDataSourceBuilder builder = ProxyDataSourceBuilder.create(beanName, dataSource).listener(listener);
+        if (countSelectRows) {
+            builder.methodListener(listener).proxyResultSet();
+        }
+        return builder.build();
+    }
+}
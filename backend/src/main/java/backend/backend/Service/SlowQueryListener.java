@@ -0,0 +1,157 @@
+package backend.backend.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.MethodExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ProxyJdbcObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class SlowQueryListener implements QueryExecutionListener, MethodExecutionListener {
+    // Writes one JSON line to the "slow-query" logger for every statement that takes at least the threshold.
+    // Updates and batches are written as soon as they finish with the rows reported by the driver. The rows of
+    // a select are only known while its ResultSet is read: when countSelectRows is on (the ResultSets must then
+    // go through the proxy), a slow select is written when its ResultSet is closed; otherwise it is written at
+    // once without rows. The logger is asynchronous (see logback-spring.xml) and the SQL is written without the
+    // values of its parameters.
+
+    static final String LOGGER_NAME = "slow-query";
+    // Selects whose ResultSet is never closed through the proxy are written without rows past this limit
+    static final int MAX_PENDING = 1000;
+
+    private static final Logger log = LoggerFactory.getLogger(LOGGER_NAME);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final long thresholdMs;
+    private final int maxSqlLength;
+    private final boolean countSelectRows;
+    // Slow selects waiting for their ResultSet to be closed, by the ResultSet of the driver
+    private final Map<ResultSet, PendingQuery> pending = new ConcurrentHashMap<>();
+
+    public SlowQueryListener(long thresholdMs, int maxSqlLength, boolean countSelectRows) {
+        this.thresholdMs = thresholdMs;
+        this.maxSqlLength = maxSqlLength;
+        this.countSelectRows = countSelectRows;
+    }
+
+    private static final class PendingQuery {
+        private final Map<String, Object> entry;
+        private long rows;
+
+        private PendingQuery(Map<String, Object> entry) {
+            this.entry = entry;
+        }
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        if (execInfo.getElapsedTime() < thresholdMs) {
+            return;
+        }
+        Map<String, Object> entry = entry(execInfo, queryInfoList);
+        Object result = execInfo.getResult();
+        if (result instanceof ProxyJdbcObject proxy) {
+            result = proxy.getTarget();
+        }
+        if (countSelectRows && result instanceof ResultSet resultSet && pending.size() < MAX_PENDING) {
+            pending.put(resultSet, new PendingQuery(entry));
+            return;
+        }
+        entry.put("rows", rows(result));
+        write(entry);
+    }
+
+    @Override
+    public void beforeMethod(MethodExecutionContext executionContext) {
+    }
+
+    @Override
+    public void afterMethod(MethodExecutionContext executionContext) {
+        if (pending.isEmpty() || !(executionContext.getTarget() instanceof ResultSet resultSet)) {
+            return;
+        }
+        String method = executionContext.getMethod().getName();
+        if ("next".equals(method)) {
+            PendingQuery query = pending.get(resultSet);
+            if (query != null && Boolean.TRUE.equals(executionContext.getResult())) {
+                query.rows++;
+            }
+        } else if ("close".equals(method)) {
+            PendingQuery query = pending.remove(resultSet);
+            if (query != null) {
+                query.entry.put("rows", query.rows);
+                write(query.entry);
+            }
+        }
+    }
+
+    private Map<String, Object> entry(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        int parameters = 0;
+        StringBuilder sql = new StringBuilder();
+        for (QueryInfo queryInfo : queryInfoList) {
+            for (List<?> parameterSet : queryInfo.getParametersList()) {
+                parameters += parameterSet.size();
+            }
+            if (sql.length() > 0) {
+                sql.append("; ");
+            }
+            sql.append(queryInfo.getQuery());
+        }
+        if (sql.length() > maxSqlLength) {
+            sql.setLength(maxSqlLength);
+        }
+
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("timestamp", Instant.now().toString());
+        entry.put("elapsedMs", execInfo.getElapsedTime());
+        entry.put("statementType", execInfo.getStatementType().name());
+        entry.put("batchSize", execInfo.isBatch() ? execInfo.getBatchSize() : 0);
+        entry.put("parameters", parameters);
+        entry.put("success", execInfo.isSuccess());
+        entry.put("connectionId", execInfo.getConnectionId());
+        entry.put("thread", Thread.currentThread().getName());
+        entry.put("sql", sql.toString());
+        return entry;
+    }
+
+    // Rows changed by an update or a batch, null for selects and when the driver does not report them
+    private static Long rows(Object result) {
+        if (result instanceof Integer count && count >= 0) {
+            return count.longValue();
+        }
+        if (result instanceof int[] counts) {
+            long rows = 0;
+            for (int count : counts) {
+                if (count < 0) {
+                    return null;
+                }
+                rows += count;
+            }
+            return rows;
+        }
+        return null;
+    }
+
+    private static void write(Map<String, Object> entry) {
+        try {
+            log.warn(objectMapper.writeValueAsString(entry));
+        } catch (JsonProcessingException e) {
+            log.warn("{\"error\":\"slow query entry could not be written\"}");
+        }
+    }
+}
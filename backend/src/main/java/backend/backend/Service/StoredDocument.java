@@ -0,0 +1,16 @@
+package backend.backend.Service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+
+public class StoredDocument {
+    // Reference to a document saved in the DocumentStore
+
+    // SHA-256 of the content in hexadecimal, it is also the key of the document in the store
+    private String hash;
+    // Size of the content in bytes
+    private long size;
+}
@@ -0,0 +1,37 @@
+-- Esquema inicial. Las tablas pueden existir ya si la base fue creada por hibernate (ddl-auto=update),
+-- por eso todas las sentencias son idempotentes.
+
+create table if not exists client (
+    id          bigint generated by default as identity primary key,
+    rut         varchar(255),
+    email       varchar(255),
+    password    varchar(255),
+    first_name  varchar(255),
+    last_name   varchar(255),
+    age         integer not null,
+    salary      integer not null,
+    job_tenure  integer not null,
+    dicom       boolean not null
+);
+
+create table if not exists history_count (
+    id          bigint generated by default as identity primary key,
+    clientid    bigint not null,
+    change      integer not null,
+    change_date timestamp(6)
+);
+
+create table if not exists request (
+    id              bigint generated by default as identity primary key,
+    type_of_request varchar(255),
+    stage           integer not null,
+    client_id       bigint not null,
+    amount          integer not null,
+    year_term       integer not null,
+    pdf_document    oid
+);
+
+-- Columnas agregadas despues de la primera version de la tabla request
+alter table request add column if not exists document_hash varchar(64);
+alter table request add column if not exists document_size bigint;
+alter table request add column if not exists version integer not null default 0;
@@ -0,0 +1,8 @@
+-- Indices para las consultas por cliente y las busquedas por rut y email
+
+create index if not exists idx_history_count_client_date on history_count (clientid, change_date);
+
+create index if not exists idx_request_client_stage on request (client_id, stage);
+
+create unique index if not exists ux_client_rut on client (rut);
+create unique index if not exists ux_client_email on client (email);
@@ -0,0 +1,14 @@
+-- Saldo de la cuenta de ahorro de cada cliente, se actualiza con cada movimiento nuevo
+
+create table if not exists client_savings (
+    clientid         bigint primary key,
+    balance          bigint not null,
+    movement_count   bigint not null,
+    last_change_date timestamp(6)
+);
+
+insert into client_savings (clientid, balance, movement_count, last_change_date)
+select clientid, coalesce(sum(change), 0), count(*), max(change_date)
+from history_count
+group by clientid
+on conflict (clientid) do nothing;
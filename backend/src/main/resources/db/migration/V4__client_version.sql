@@ -0,0 +1,3 @@
+-- Version del cliente, las evaluaciones guardadas en cache dependen de ella
+
+alter table client add column if not exists version bigint not null default 0;
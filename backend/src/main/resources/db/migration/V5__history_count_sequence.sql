@@ -0,0 +1,10 @@
+-- Los ids de history_count pasan de identity a una secuencia que hibernate usa en bloques de 50 (allocationSize),
+-- lo que permite insertar en batch. La secuencia parte sobre el id mas alto para que el primer bloque no choque
+-- con los ids existentes, y tambien es el default de la columna para los inserts hechos por SQL.
+
+create sequence if not exists history_count_seq increment by 50;
+select setval('history_count_seq', coalesce((select max(id) from history_count), 0) + 50, false);
+
+alter table history_count alter column id drop identity if exists;
+alter table history_count alter column id set default nextval('history_count_seq');
+alter sequence history_count_seq owned by history_count.id;
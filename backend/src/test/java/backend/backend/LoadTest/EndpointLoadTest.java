@@ -0,0 +1,269 @@
+package backend.backend.LoadTest;
+
+import backend.backend.Service.HistoryCountService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Load test of the HTTP endpoints over the real application and an embedded PostgreSQL. It seeds clients with
+ * their savings history, sends concurrent requests to each endpoint in turn and writes the p50/p99 latency and
+ * the throughput of each one to target/load-test/results.json.
+ * Only runs with the load-test profile: mvn test -Pload-test, the sizes are set with the load.* properties.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.jpa.show-sql=false"})
+public class EndpointLoadTest {
+
+    private static final int CLIENTS = Integer.getInteger("load.clients", 200);
+    private static final int MOVEMENTS = Integer.getInteger("load.movements", 50);
+    private static final int REQUESTS = Integer.getInteger("load.requests", 2000);
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 16);
+    private static final int PDF_KB = Integer.getInteger("load.pdf-kb", 256);
+    private static final Path OUTPUT = Path.of(System.getProperty("load.output", "target/load-test/results.json"));
+
+    private static EmbeddedPostgres postgres;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private HistoryCountService historyCountService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) throws IOException {
+        postgres = EmbeddedPostgres.start();
+        registry.add("spring.datasource.url", () -> postgres.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+        Path documents = Files.createTempDirectory("load-test-documents");
+        registry.add("documents.store.path", documents::toString);
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    @Test
+    public void endpoints() throws Exception {
+        List<Long> clientIds = seed();
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        results.add(run("POST /Client/P4", () -> json("/Client/P4", Map.of(
+                "clientId", String.valueOf(randomClient(clientIds)),
+                "type", "1",
+                "loan", "100000000",
+                "debt", String.valueOf(ThreadLocalRandom.current().nextInt(100_000, 500_000)),
+                "amount", String.valueOf(ThreadLocalRandom.current().nextInt(50, 100) * 1_000_000),
+                "older", "3",
+                "termYears", "20",
+                "annualInterest", "0.045"))));
+        results.add(run("POST /Client/simulateLoanAmount", () -> json("/Client/simulateLoanAmount", Map.of(
+                "amount", String.valueOf(ThreadLocalRandom.current().nextInt(50, 100) * 1_000_000),
+                "termYears", String.valueOf(ThreadLocalRandom.current().nextInt(5, 31)),
+                "annualInterest", "0.045"))));
+        results.add(run("POST /Request/create", () -> createRequest(randomClient(clientIds))));
+        results.add(run("GET /Request/getAll", () -> HttpRequest.newBuilder(uri("/Request/getAll?limit=100&afterId="
+                + ThreadLocalRandom.current().nextInt(REQUESTS))).GET().build()));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("clients", CLIENTS);
+        report.put("movementsPerClient", MOVEMENTS);
+        report.put("requestsPerEndpoint", REQUESTS);
+        report.put("concurrency", CONCURRENCY);
+        report.put("pdfKb", PDF_KB);
+        report.put("endpoints", results);
+        Files.createDirectories(OUTPUT.toAbsolutePath().getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(OUTPUT.toFile(), report);
+
+        for (Map<String, Object> result : results) {
+            assertEquals(0, result.get("errors"), "Failed requests in " + result.get("endpoint"));
+        }
+    }
+
+    // Inserts the clients and their movements directly and builds the savings aggregates from them
+    private List<Long> seed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Object[]> clients = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            clients.add(new Object[]{"load-" + i, "load-" + i + "@mail.com", "password", "Load", "Client " + i,
+                    random.nextInt(25, 65), random.nextInt(500_000, 3_000_000), random.nextInt(0, 10), random.nextInt(10) == 0});
+        }
+        jdbcTemplate.batchUpdate("insert into client (rut, email, password, first_name, last_name, age, salary, job_tenure, dicom) "
+                + "values (?, ?, ?, ?, ?, ?, ?, ?, ?)", clients);
+        List<Long> clientIds = jdbcTemplate.queryForList("select id from client where rut like 'load-%'", Long.class);
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> movements = new ArrayList<>();
+        for (Long clientId : clientIds) {
+            for (int i = 0; i < MOVEMENTS; i++) {
+                int change = random.nextInt(10_000, 500_000);
+                movements.add(new Object[]{clientId, random.nextInt(10) == 0 ? -change / 10 : change,
+                        Timestamp.valueOf(now.minusDays(random.nextInt(0, 730)))});
+            }
+            if (movements.size() >= 10_000) {
+                insertMovements(movements);
+            }
+        }
+        insertMovements(movements);
+        historyCountService.rebuildSavings();
+        return clientIds;
+    }
+
+    private void insertMovements(List<Object[]> movements) {
+        jdbcTemplate.batchUpdate("insert into history_count (clientid, change, change_date) values (?, ?, ?)", movements);
+        movements.clear();
+    }
+
+    /**
+     * Sends REQUESTS requests built by the supplier with CONCURRENCY threads, after a short warm up.
+     *
+     * @return The latency percentiles in milliseconds, the throughput in requests per second and the failed requests.
+     */
+    private Map<String, Object> run(String endpoint, Supplier<HttpRequest> requests) throws Exception {
+        send(requests, Math.max(REQUESTS / 10, CONCURRENCY));
+
+        long start = System.nanoTime();
+        long[] latencies = send(requests, REQUESTS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int errors = 0;
+        for (long latency : latencies) {
+            if (latency < 0) {
+                errors++;
+            }
+        }
+        long[] succeeded = Arrays.stream(latencies).filter(latency -> latency >= 0).sorted().toArray();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("endpoint", endpoint);
+        result.put("requests", REQUESTS);
+        result.put("errors", errors);
+        result.put("p50Ms", percentile(succeeded, 0.50));
+        result.put("p99Ms", percentile(succeeded, 0.99));
+        result.put("maxMs", succeeded.length == 0 ? 0 : succeeded[succeeded.length - 1] / 1e6);
+        result.put("throughputPerSecond", REQUESTS / seconds);
+        return result;
+    }
+
+    // Latency in nanoseconds of each request, -1 for the ones that failed
+    private long[] send(Supplier<HttpRequest> requests, int count) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENCY);
+        try {
+            List<Future<Long>> futures = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                futures.add(executor.submit(() -> {
+                    HttpRequest request = requests.get();
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                        return response.statusCode() < 400 ? System.nanoTime() - start : -1L;
+                    } catch (IOException e) {
+                        return -1L;
+                    }
+                }));
+            }
+            long[] latencies = new long[count];
+            for (int i = 0; i < count; i++) {
+                latencies[i] = futures.get(i).get();
+            }
+            return latencies;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static double percentile(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(index, 0)] / 1e6;
+    }
+
+    private HttpRequest json(String path, Map<String, String> body) {
+        try {
+            return HttpRequest.newBuilder(uri(path))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Multipart upload of a PDF of PDF_KB kilobytes with random content, so every document is stored
+    private HttpRequest createRequest(long clientId) {
+        String boundary = "load-test-" + System.nanoTime();
+        byte[] pdf = new byte[PDF_KB * 1024];
+        ThreadLocalRandom.current().nextBytes(pdf);
+        System.arraycopy("%PDF-1.4\n".getBytes(StandardCharsets.US_ASCII), 0, pdf, 0, 9);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(pdf.length + 1024);
+        Map<String, String> fields = Map.of("typeOfRequest", "Primera vivienda", "stage", "1", "Amount", "80000000",
+                "termYears", "20", "clientId", String.valueOf(clientId));
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            body.writeBytes(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"" + field.getKey()
+                    + "\"\r\n\r\n" + field.getValue() + "\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+        body.writeBytes(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"pdfFile\"; filename=\"request.pdf\""
+                + "\r\nContent-Type: application/pdf\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(pdf);
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        return HttpRequest.newBuilder(uri("/Request/create"))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+    }
+
+    private static long randomClient(List<Long> clientIds) {
+        return clientIds.get(ThreadLocalRandom.current().nextInt(clientIds.size()));
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+}
@@ -0,0 +1,158 @@
+package backend.backend.LoadTest;
+
+import backend.backend.Entity.ClientEntity;
+import backend.backend.Entity.ClientSavingsEntity;
+import backend.backend.Entity.HistoryCountEntity;
+import backend.backend.Repository.ClientSavingsRepository;
+import backend.backend.Repository.HistoryCountRepository;
+import backend.backend.Service.ClientService;
+import backend.backend.Service.HistoryCountService;
+import backend.backend.Service.SavingsSnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bytes allocated by one R7 evaluation of a client with a long history, read through managed entities in a
+ * read-write transaction (how the evaluation read its data before) and through the read-only path of
+ * HistoryCountService (aggregates as DTOs and the history as columns). The client cache is disabled so both
+ * read the client every time. The result is written to target/load-test/allocation.json.
+ * Only runs with the load-test profile: mvn test -Pload-test, the sizes are set with the load.allocation.* properties.
+ */
+@Tag("load")
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "clients.cache.max-size=0", "evaluation.cache.enabled=false"})
+public class EvaluationAllocationTest {
+
+    private static final int MOVEMENTS = Integer.getInteger("load.allocation.movements", 5000);
+    private static final int ITERATIONS = Integer.getInteger("load.allocation.iterations", 200);
+    private static final Path OUTPUT = Path.of(System.getProperty("load.allocation.output", "target/load-test/allocation.json"));
+
+    private static EmbeddedPostgres postgres;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private HistoryCountRepository historyCountRepository;
+
+    @Autowired
+    private ClientSavingsRepository clientSavingsRepository;
+
+    @Autowired
+    private HistoryCountService historyCountService;
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) throws IOException {
+        postgres = EmbeddedPostgres.start();
+        registry.add("spring.datasource.url", () -> postgres.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+        Path documents = Files.createTempDirectory("allocation-test-documents");
+        registry.add("documents.store.path", documents::toString);
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    @Test
+    public void evaluationAllocation() throws Exception {
+        long clientId = seed();
+        int amount = 50_000_000;
+
+        BooleanSupplier managed = () -> transactionTemplate.execute(status -> {
+            ClientEntity client = entityManager.find(ClientEntity.class, clientId);
+            long balance = clientSavingsRepository.findById(clientId).map(ClientSavingsEntity::getBalance).orElse(0L);
+            List<HistoryCountEntity> history = historyCountRepository.findAllByClientid(clientId);
+            return historyCountService.R7Complete(SavingsSnapshot.ofRecent((int) balance, history), client, 3, amount);
+        });
+        BooleanSupplier readOnly = () -> historyCountService.R7Complete(clientId, 3, amount);
+        BooleanSupplier rcomplete = () -> clientService.Rcomplete(clientId, 1, 100_000_000, 100_000, amount, 3, 20, 0.045).get(6);
+
+        assertEquals(managed.getAsBoolean(), readOnly.getAsBoolean());
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("movements", MOVEMENTS);
+        report.put("iterations", ITERATIONS);
+        long managedBytes = bytesPerEvaluation(managed);
+        long readOnlyBytes = bytesPerEvaluation(readOnly);
+        report.put("managedR7BytesPerEvaluation", managedBytes);
+        report.put("readOnlyR7BytesPerEvaluation", readOnlyBytes);
+        report.put("readOnlyRcompleteBytesPerEvaluation", bytesPerEvaluation(rcomplete));
+        report.put("reduction", 1 - (double) readOnlyBytes / managedBytes);
+        Files.createDirectories(OUTPUT.toAbsolutePath().getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(OUTPUT.toFile(), report);
+
+        assertTrue(readOnlyBytes < managedBytes, "The read-only evaluation allocates more than the managed one: " + report);
+    }
+
+    // Average bytes allocated by the current thread in each evaluation, after a warm up of the same length
+    private static long bytesPerEvaluation(BooleanSupplier evaluation) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < ITERATIONS; i++) {
+            evaluation.getAsBoolean();
+        }
+        long start = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            evaluation.getAsBoolean();
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - start) / ITERATIONS;
+    }
+
+    // One client with MOVEMENTS deposits and withdrawals spread over the last 11 months
+    private long seed() {
+        jdbcTemplate.update("insert into client (rut, email, password, first_name, last_name, age, salary, job_tenure, dicom) "
+                + "values ('allocation-1', 'allocation@mail.com', 'password', 'Allocation', 'Client', 40, 1500000, 5, false)");
+        long clientId = jdbcTemplate.queryForObject("select id from client where rut = 'allocation-1'", Long.class);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> movements = new ArrayList<>();
+        for (int i = 0; i < MOVEMENTS; i++) {
+            int change = random.nextInt(10_000, 500_000);
+            movements.add(new Object[]{clientId, random.nextInt(10) == 0 ? -change / 10 : change,
+                    Timestamp.valueOf(now.minusMinutes(random.nextLong(1, 11L * 30 * 24 * 60)))});
+        }
+        jdbcTemplate.batchUpdate("insert into history_count (clientid, change, change_date) values (?, ?, ?)", movements);
+        historyCountService.rebuildSavings();
+        return clientId;
+    }
+}
@@ -0,0 +1,106 @@
+package backend.backend.LoadTest;
+
+import backend.backend.Service.ClientService;
+import backend.backend.Service.HistoryCountService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Concurrent P4 evaluations in parallel mode with a pool of two connections. Each evaluation reads the client
+ * and the history in two tasks of the evaluation pool, so the request thread must not hold a connection while
+ * it waits for them: with more callers than connections every task would wait for one until connection-timeout.
+ * Only runs with the load-test profile: mvn test -Pload-test.
+ */
+@Tag("load")
+@SpringBootTest(properties = {"db.pool.max-size=2", "spring.datasource.hikari.connection-timeout=2000",
+        "evaluation.parallel.enabled=true", "evaluation.parallel.threads=8", "evaluation.parallel.timeout-ms=10000",
+        "evaluation.cache.enabled=false", "clients.cache.max-size=0", "clients.cache.listen=false"})
+public class ParallelEvaluationPoolTest {
+
+    private static final int CLIENTS = 4;
+    private static final int CALLERS = 8;
+    private static final int EVALUATIONS = 64;
+
+    private static EmbeddedPostgres postgres;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private HistoryCountService historyCountService;
+
+    @Autowired
+    private ClientService clientService;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) throws IOException {
+        postgres = EmbeddedPostgres.start();
+        registry.add("spring.datasource.url", () -> postgres.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+        Path documents = Files.createTempDirectory("pool-test-documents");
+        registry.add("documents.store.path", documents::toString);
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    @Test
+    public void parallelEvaluationsDoNotStarveThePool() throws Exception {
+        List<Long> clientIds = seed();
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<List<Boolean>>> results = new ArrayList<>();
+            for (int i = 0; i < EVALUATIONS; i++) {
+                long clientId = clientIds.get(i % CLIENTS);
+                results.add(callers.submit(() -> clientService.Rcomplete(clientId, 1, 100_000_000, 100_000, 5_000_000, 3, 20, 0.045)));
+            }
+            for (Future<List<Boolean>> result : results) {
+                assertEquals(7, result.get().size());
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    // CLIENTS clients with a deposit in each of the last 12 months
+    private List<Long> seed() {
+        List<Long> clientIds = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (int c = 0; c < CLIENTS; c++) {
+            jdbcTemplate.update("insert into client (rut, email, password, first_name, last_name, age, salary, job_tenure, dicom) "
+                    + "values (?, ?, 'password', 'Pool', 'Client', 40, 1500000, 5, false)", "pool-" + c, "pool" + c + "@mail.com");
+            long clientId = jdbcTemplate.queryForObject("select id from client where rut = ?", Long.class, "pool-" + c);
+            List<Object[]> movements = new ArrayList<>();
+            for (int month = 0; month < 12; month++) {
+                movements.add(new Object[]{clientId, 200_000, Timestamp.valueOf(now.minusMonths(month).minusDays(1))});
+            }
+            jdbcTemplate.batchUpdate("insert into history_count (clientid, change, change_date) values (?, ?, ?)", movements);
+            clientIds.add(clientId);
+        }
+        historyCountService.rebuildSavings();
+        return clientIds;
+    }
+}
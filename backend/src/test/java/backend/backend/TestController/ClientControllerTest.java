@@ -0,0 +1,108 @@
+package backend.backend.TestController;
+
+import backend.backend.Controller.ClientController;
+import backend.backend.Service.AmortizationRow;
+import backend.backend.Service.ClientService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class ClientControllerTest {
+
+    @Mock
+    private ClientService clientService;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private ClientController clientController;
+
+    private MockMvc mockMvc;
+
+    private static final String EVALUATION = "{\"clientId\": \"1\", \"type\": \"1\", \"loan\": \"100000\", \"debt\": \"0\", "
+            + "\"amount\": \"50000\", \"older\": \"3\", \"termYears\": \"%d\", \"annualInterest\": \"0.045\"}";
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        mockMvc = MockMvcBuilders.standaloneSetup(clientController).build();
+    }
+
+    // Test for schedule method: one JSON object per line, with nothing between the newline and the next object
+    @Test
+    public void testSchedule() throws Exception {
+        when(clientService.amortizationSchedule(1200, 1, 0.0, 0.0, 0.0, 0.0)).thenReturn(List.of(
+                new AmortizationRow(1, 100, 0, 100, 1100, 0, 0, 0, 100),
+                new AmortizationRow(2, 100, 0, 100, 1000, 0, 0, 0, 100)).iterator());
+
+        MvcResult result = mockMvc.perform(post("/Client/schedule")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\": \"1200\", \"termYears\": \"1\", \"annualInterest\": \"0\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string(
+                        "{\"month\":1,\"installment\":100.0,\"interest\":0.0,\"principal\":100.0,\"balance\":1100.0,"
+                                + "\"lifeInsurance\":0.0,\"fireInsurance\":0.0,\"adminFee\":0.0,\"total\":100.0}\n"
+                                + "{\"month\":2,\"installment\":100.0,\"interest\":0.0,\"principal\":100.0,\"balance\":1000.0,"
+                                + "\"lifeInsurance\":0.0,\"fireInsurance\":0.0,\"adminFee\":0.0,\"total\":100.0}\n"));
+    }
+
+    @Test
+    public void testSchedule_InvalidParameters() throws Exception {
+        mockMvc.perform(post("/Client/schedule")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\": \"abc\", \"termYears\": \"1\", \"annualInterest\": \"0\"}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // Test for P4 method: a term of 0 years has no installment, the request is rejected before evaluating
+    @Test
+    public void testP4_ZeroTermYears() throws Exception {
+        mockMvc.perform(post("/Client/P4")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(EVALUATION.formatted(0)))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(clientService);
+    }
+
+    @Test
+    public void testP4Batch_ZeroTermYears() throws Exception {
+        mockMvc.perform(post("/Client/P4/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + EVALUATION.formatted(20) + ", " + EVALUATION.formatted(0) + "]"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(clientService);
+    }
+
+    @Test
+    public void testP4Batch_TooManyEvaluations() throws Exception {
+        when(clientService.RcompleteBatch(anyList())).thenThrow(new IllegalArgumentException("The batch is too large."));
+
+        mockMvc.perform(post("/Client/P4/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + EVALUATION.formatted(20) + "]"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,87 @@
+package backend.backend.TestController;
+
+import backend.backend.Controller.HistoryCountController;
+import backend.backend.Entity.HistoryCountEntity;
+import backend.backend.Service.HistoryCountService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class HistoryCountControllerTest {
+
+    @Mock
+    private HistoryCountService historyCountService;
+
+    @InjectMocks
+    private HistoryCountController historyCountController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        mockMvc = MockMvcBuilders.standaloneSetup(historyCountController).build();
+    }
+
+    private static List<HistoryCountEntity> movements(int count, Timestamp changeDate) {
+        List<HistoryCountEntity> movements = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            HistoryCountEntity movement = new HistoryCountEntity();
+            movement.setId(100 - i);
+            movement.setClientid(1L);
+            movement.setChange(1000);
+            movement.setChangeDate(changeDate);
+            movements.add(movement);
+        }
+        return movements;
+    }
+
+    // Test for getHistoryByClient method: a full page sends the cursor of its last movement
+    @Test
+    public void testGetHistoryByClient_FullPage() throws Exception {
+        Timestamp changeDate = Timestamp.valueOf("2026-05-01 10:00:00");
+        when(historyCountService.getHistoryPage(1L, null, 0L, 2)).thenReturn(movements(2, changeDate));
+
+        mockMvc.perform(get("/HistoryCount/client/1").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Before-Date", "2026-05-01T10:00"))
+                .andExpect(header().string("X-Next-Before-Id", "99"));
+    }
+
+    // With limit=0 the page has DEFAULT_PAGE_SIZE movements, a shorter one is the last page
+    @Test
+    public void testGetHistoryByClient_ShortPageWithDefaultLimit() throws Exception {
+        when(historyCountService.getHistoryPage(eq(1L), isNull(), eq(0L), anyInt()))
+                .thenReturn(movements(3, Timestamp.valueOf("2026-05-01 10:00:00")));
+
+        mockMvc.perform(get("/HistoryCount/client/1").param("limit", "0"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Before-Date"))
+                .andExpect(header().doesNotExist("X-Next-Before-Id"));
+    }
+
+    // A page that ends in a movement without a date only sends its id
+    @Test
+    public void testGetHistoryByClient_LastMovementWithoutDate() throws Exception {
+        when(historyCountService.getHistoryPage(1L, null, 0L, 2)).thenReturn(movements(2, null));
+
+        mockMvc.perform(get("/HistoryCount/client/1").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Before-Date"))
+                .andExpect(header().string("X-Next-Before-Id", "99"));
+    }
+}
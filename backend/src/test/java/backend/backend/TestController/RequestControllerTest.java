@@ -0,0 +1,69 @@
+package backend.backend.TestController;
+
+import backend.backend.Controller.RequestController;
+import backend.backend.Repository.RequestSummary;
+import backend.backend.Service.RequestService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class RequestControllerTest {
+
+    @Mock
+    private RequestService requestService;
+
+    @InjectMocks
+    private RequestController requestController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        mockMvc = MockMvcBuilders.standaloneSetup(requestController).build();
+    }
+
+    private static List<RequestSummary> summaries(int count) {
+        List<RequestSummary> summaries = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            summaries.add(new RequestSummary(i, "Loan", 1, 1000, 20, 1L, 3L, 0));
+        }
+        return summaries;
+    }
+
+    // Test for getAll method: a full page sends the id to continue from
+    @Test
+    public void testGetAll_FullPage() throws Exception {
+        when(requestService.getRequestSummaries(0L, 2)).thenReturn(summaries(2));
+
+        mockMvc.perform(get("/Request/getAll").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-After-Id", "2"));
+    }
+
+    // With limit=0 or a negative limit the page has DEFAULT_PAGE_SIZE requests, a shorter one is the last page
+    @Test
+    public void testGetAll_ShortPageWithDefaultLimit() throws Exception {
+        when(requestService.getRequestSummaries(0L, 0)).thenReturn(summaries(3));
+        when(requestService.getRequestSummaries(0L, -1)).thenReturn(summaries(3));
+
+        mockMvc.perform(get("/Request/getAll").param("limit", "0"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-After-Id"));
+        mockMvc.perform(get("/Request/getAll").param("limit", "-1"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-After-Id"));
+    }
+}
@@ -0,0 +1,73 @@
+package backend.backend.TestService;
+
+import backend.backend.Service.AmortizationCalculator;
+import backend.backend.Service.AmortizationRow;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AmortizationCalculatorTest {
+
+    private final AmortizationCalculator amortizationCalculator = new AmortizationCalculator();
+
+    @Test
+    void testMonthlyInstallment() {
+        // 100.000 a 20 años con 4,5% anual: 100000 * 0,0063264938
+        assertEquals(632, amortizationCalculator.monthlyInstallment(100000, 20, 0.045));
+    }
+
+    @Test
+    void testMonthlyInstallment_NoInterest() {
+        assertEquals(1000, amortizationCalculator.monthlyInstallment(120000, 10, 0));
+    }
+
+    @Test
+    void testMonthlyInstallment_ZeroTerm() {
+        assertThrows(IllegalArgumentException.class, () -> amortizationCalculator.monthlyInstallment(100000, 0, 0.045));
+    }
+
+    @Test
+    void testGrowthFactor_CachedValueIsReused() {
+        double first = amortizationCalculator.growthFactor(0.00375, 240);
+        double second = amortizationCalculator.growthFactor(0.00375, 240);
+        assertEquals(Math.pow(1.00375, 240), first);
+        assertEquals(first, second);
+        // Otro plazo con la misma tasa no debe devolver el valor guardado
+        assertEquals(Math.pow(1.00375, 120), amortizationCalculator.growthFactor(0.00375, 120));
+    }
+
+    @Test
+    void testTotalCost() {
+        // (632 + 1000 + 0,001 * 100000) * 240 + 0,002 * 100000
+        assertEquals(415880, amortizationCalculator.totalCost(100000, 20, 0.045, 0.001, 1000, 0.002));
+    }
+
+    @Test
+    void testSchedule() {
+        Iterator<AmortizationRow> rows = amortizationCalculator.schedule(100000, 20, 0.045, 0.001, 1000, 0.002);
+
+        int count = 0;
+        AmortizationRow row = null;
+        while (rows.hasNext()) {
+            row = rows.next();
+            count++;
+            assertEquals(row.getInstallment(), row.getInterest() + row.getPrincipal(), 0.02);
+            if (row.getMonth() == 1) {
+                assertEquals(200, row.getAdminFee());
+            } else {
+                assertEquals(0, row.getAdminFee());
+            }
+            if (row.getMonth() < 240) {
+                assertEquals(632, row.getInstallment());
+            }
+        }
+
+        assertEquals(240, count);
+        assertEquals(240, row.getMonth());
+        // La última cuota salda lo que dejó el truncamiento de las anteriores
+        assertTrue(row.getInstallment() > 632);
+        assertEquals(0, row.getBalance());
+    }
+}
@@ -2,15 +2,29 @@ package backend.backend.TestService;
 
 import backend.backend.Entity.ClientEntity;
 import backend.backend.Repository.ClientRepository;
+import backend.backend.Service.AmortizationCalculator;
+import backend.backend.Service.ClientCache;
+import backend.backend.Service.ClientCacheInvalidator;
 import backend.backend.Service.ClientService;
+import backend.backend.Service.EvaluationContext;
+import backend.backend.Service.EvaluationInput;
+import backend.backend.Service.EvaluationResultCache;
+import backend.backend.Service.EvaluationTrace;
+import backend.backend.Service.ParallelRuleExecutor;
+import backend.backend.Service.RuleMetrics;
+import backend.backend.Service.SavingsSnapshot;
 import backend.backend.Service.HistoryCountService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -23,12 +37,32 @@ public class ClientServiceTest {
     @Mock
     private HistoryCountService historyCountService;
 
+    @Mock
+    private ParallelRuleExecutor parallelRuleExecutor;
+
+    @Spy
+    private AmortizationCalculator amortizationCalculator = new AmortizationCalculator();
+
+    @Mock
+    private ClientCacheInvalidator clientCacheInvalidator;
+
+    @Spy
+    private EvaluationResultCache evaluationResultCache = new EvaluationResultCache(true, 100, 60);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private RuleMetrics ruleMetrics = new RuleMetrics(meterRegistry);
+
     @InjectMocks
     private ClientService clientService;
 
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
+        // Real cache in front of the mocked repository, each test starts with it empty
+        ReflectionTestUtils.setField(clientService, "clientCache", new ClientCache(clientRepository, 100, 60));
+        ReflectionTestUtils.setField(clientService, "maxBatchSize", 10);
     }
 
     // Test for createClient method (P2)
@@ -43,6 +77,33 @@ public class ClientServiceTest {
         verify(clientRepository, times(1)).save(client);
     }
 
+    @Test
+    public void testCreateClient_WritesThroughCache() {
+        ClientEntity client = new ClientEntity();
+        client.setId(4L);
+        client.setRut("12.345.678-9");
+        when(clientRepository.save(client)).thenReturn(client);
+
+        clientService.createClient(client);
+
+        assertSame(client, clientService.getClientById(4L));
+        assertSame(client, clientService.getClient("12.345.678-9"));
+        verify(clientRepository, never()).findById(anyLong());
+        verify(clientRepository, never()).findByRut(anyString());
+        verify(clientCacheInvalidator).publish(4L);
+    }
+
+    @Test
+    public void testGetClientById_ReadsRepositoryOnce() {
+        ClientEntity client = new ClientEntity();
+        when(clientRepository.findById(2L)).thenReturn(client);
+
+        clientService.getClientById(2L);
+        clientService.getClientById(2L);
+
+        verify(clientRepository, times(1)).findById(2L);
+    }
+
     // Test for getClientById method
     @Test
     public void testGetClientById() {
@@ -198,11 +259,136 @@ public class ClientServiceTest {
         mockClient.setAge(older); // Establece la edad si es necesario
         when(clientRepository.findById(clientId)).thenReturn(mockClient);
 
-        when(historyCountService.R7Complete(clientId, older, amount)).thenReturn(true);
+        when(historyCountService.R7Complete(any(EvaluationContext.class), eq(older), eq(amount))).thenReturn(true);
 
         List<Boolean> result = clientService.Rcomplete(clientId, type, loan, debt, amount, older, termYears, annualInterest);
 
         assertEquals(7, result.size());
         assertTrue(result.get(6)); // Suponiendo que R7 es true
+        // El cliente se carga una sola vez para todas las reglas
+        verify(clientRepository, times(1)).findById(clientId);
+        // Cada regla queda medida con su resultado
+        assertEquals(1, meterRegistry.get("evaluation.rule").tags("rule", "R7", "outcome", "pass").timer().count());
+        assertEquals(7, meterRegistry.get("evaluation.rule").timers().stream().mapToLong(timer -> timer.count()).sum());
+    }
+
+    @Test
+    public void testRcomplete_RepeatedEvaluationIsCached() {
+        long clientId = 1L;
+        ClientEntity client = new ClientEntity();
+        client.setSalary(500000);
+        client.setAge(40);
+        when(clientRepository.findById(clientId)).thenReturn(client);
+        when(historyCountService.getHistoryVersion(clientId)).thenReturn(3L);
+        when(historyCountService.R7Complete(any(EvaluationContext.class), anyInt(), anyInt())).thenReturn(true);
+
+        List<Boolean> first = clientService.Rcomplete(clientId, 1, 100000, 50000, 100000, 3, 20, 0.045);
+        List<Boolean> second = clientService.Rcomplete(clientId, 1, 100000, 50000, 100000, 3, 20, 0.045);
+
+        assertEquals(first, second);
+        verify(historyCountService, times(1)).R7Complete(any(EvaluationContext.class), anyInt(), anyInt());
+        assertEquals(0.5, evaluationResultCache.hitRatio());
+
+        // Otros parámetros o un movimiento nuevo en el historial no usan el resultado guardado
+        clientService.Rcomplete(clientId, 1, 100000, 50000, 200000, 3, 20, 0.045);
+        when(historyCountService.getHistoryVersion(clientId)).thenReturn(4L);
+        clientService.Rcomplete(clientId, 1, 100000, 50000, 100000, 3, 20, 0.045);
+        verify(historyCountService, times(3)).R7Complete(any(EvaluationContext.class), anyInt(), anyInt());
+    }
+
+    @Test
+    public void testRcompleteTraced() {
+        long clientId = 1L;
+        ClientEntity client = new ClientEntity();
+        client.setSalary(500000);
+        client.setAge(40);
+        when(clientRepository.findById(clientId)).thenReturn(client);
+        when(historyCountService.R7Complete(any(EvaluationContext.class), anyInt(), anyInt())).thenReturn(true);
+
+        EvaluationTrace trace = clientService.RcompleteTraced(clientId, 1, 100000, 50000, 100000, 3, 20, 0.045);
+        List<Boolean> result = clientService.Rcomplete(clientId, 1, 100000, 50000, 100000, 3, 20, 0.045);
+
+        assertEquals(result, trace.getResults());
+        assertEquals(List.of("client", "R1", "R2", "R3", "R4", "R5", "R6", "R7"),
+                trace.getSteps().stream().map(EvaluationTrace.Step::name).toList());
+        assertEquals(40, trace.getSteps().get(6).values().get("age"));
+        // La evaluación con trace le pasa el trace a R7
+        verify(historyCountService).R7Complete(argThat((EvaluationContext context) -> context.getTrace() == trace), eq(3), eq(100000));
+    }
+
+    // Test for RcompleteBatch method
+    @Test
+    public void testRcompleteBatch() {
+        ClientEntity client = new ClientEntity();
+        client.setId(1L);
+        client.setSalary(500000);
+        client.setAge(40);
+        when(clientRepository.findAllById(anyIterable())).thenReturn(List.of(client));
+        when(historyCountService.getSavingsSnapshots(anyCollection())).thenReturn(Map.of(1L, SavingsSnapshot.of(List.of())));
+        when(historyCountService.R7Complete(any(EvaluationContext.class), anyInt(), anyInt())).thenReturn(true);
+
+        List<List<Boolean>> result = clientService.RcompleteBatch(List.of(
+                new EvaluationInput(1L, 1, 100000, 50000, 100000, 3, 20, 0.045),
+                new EvaluationInput(2L, 1, 100000, 50000, 100000, 3, 20, 0.045),
+                new EvaluationInput(1L, 2, 100000, 50000, 100000, 3, 20, 0.045)));
+
+        assertEquals(3, result.size());
+        assertEquals(7, result.get(0).size());
+        assertNull(result.get(1)); // El cliente 2 no existe
+        assertEquals(7, result.get(2).size());
+        // Los clientes se cargan con una sola consulta
+        verify(clientRepository, times(1)).findAllById(anyIterable());
+        verify(clientRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    public void testRcompleteBatch_TooManyEvaluations() {
+        List<EvaluationInput> inputs = new java.util.ArrayList<>();
+        for (long id = 1; id <= 11; id++) {
+            inputs.add(new EvaluationInput(id, 1, 100000, 50000, 100000, 3, 20, 0.045));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> clientService.RcompleteBatch(inputs));
+        // El lote se rechaza antes de consultar la base de datos
+        verifyNoInteractions(clientRepository, historyCountService);
+    }
+
+    // Test for RcompleteParallel method
+    @Test
+    public void testRcompleteParallel() {
+        long clientId = 1L;
+        ParallelRuleExecutor executor = new ParallelRuleExecutor(true, 2, 10, 5000);
+        ReflectionTestUtils.setField(clientService, "parallelRuleExecutor", executor);
+
+        ClientEntity client = new ClientEntity();
+        client.setSalary(500000);
+        client.setAge(40);
+        client.setJobTenure(2);
+        when(clientRepository.findById(clientId)).thenReturn(client);
+        when(historyCountService.getSavingsSnapshot(clientId)).thenReturn(SavingsSnapshot.of(List.of()));
+        when(historyCountService.R7Complete(any(SavingsSnapshot.class), eq(client), eq(3), eq(100000))).thenReturn(true);
+
+        List<Boolean> parallel = clientService.Rcomplete(clientId, 1, 100000, 50000, 100000, 3, 20, 0.045);
+        List<Boolean> sequential = clientService.Rcomplete(clientService.loadEvaluationContext(clientId), 1, 100000, 50000, 100000, 3, 20, 0.045);
+
+        assertEquals(7, parallel.size());
+        assertEquals(sequential.subList(0, 6), parallel.subList(0, 6));
+        assertTrue(parallel.get(6));
+        executor.shutdown();
+    }
+
+    @Test
+    public void testRcompleteParallel_PropagatesFailure() {
+        long clientId = 1L;
+        ParallelRuleExecutor executor = new ParallelRuleExecutor(true, 2, 10, 5000);
+        ReflectionTestUtils.setField(clientService, "parallelRuleExecutor", executor);
+
+        when(clientRepository.findById(clientId)).thenThrow(new IllegalArgumentException("DB down"));
+        when(historyCountService.getSavingsSnapshot(clientId)).thenReturn(SavingsSnapshot.of(List.of()));
+
+        Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> clientService.Rcomplete(clientId, 1, 100000, 50000, 100000, 3, 20, 0.045));
+        assertEquals("DB down", exception.getMessage());
+        executor.shutdown();
     }
 }
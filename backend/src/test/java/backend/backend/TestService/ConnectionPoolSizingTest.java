@@ -0,0 +1,34 @@
+package backend.backend.TestService;
+
+import backend.backend.Service.ConnectionPoolSizing;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolSizingTest {
+
+    @Test
+    void testPoolSize_SplitsDatabaseConnectionsBetweenReplicas() {
+        // 8 núcleos: 17 conexiones, menos una LISTEN por réplica, entre 3 réplicas
+        assertEquals(4, ConnectionPoolSizing.poolSize(3, 8, 16));
+        assertEquals(16, ConnectionPoolSizing.poolSize(1, 8, 16));
+    }
+
+    @Test
+    void testPoolSize_LimitedByLocalCpus() {
+        assertEquals(3, ConnectionPoolSizing.poolSize(1, 32, 1));
+    }
+
+    @Test
+    void testPoolSize_NeverBelowMinimum() {
+        assertEquals(2, ConnectionPoolSizing.poolSize(10, 2, 8));
+    }
+
+    @Test
+    void testPostProcess_ConfiguredSizeWins() {
+        HikariDataSource dataSource = new HikariDataSource();
+        new ConnectionPoolSizing(7, 3, 8).postProcessAfterInitialization(dataSource, "dataSource");
+        assertEquals(7, dataSource.getMaximumPoolSize());
+    }
+}
@@ -0,0 +1,69 @@
+package backend.backend.TestService;
+
+import backend.backend.Service.FileSystemDocumentStore;
+import backend.backend.Service.StoredDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileSystemDocumentStoreTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void testSave_KeyedBySha256() throws Exception {
+        FileSystemDocumentStore store = new FileSystemDocumentStore(root.toString());
+
+        StoredDocument document = store.save(new ByteArrayInputStream("abc".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", document.getHash());
+        assertEquals(3, document.getSize());
+        assertTrue(store.exists(document.getHash()));
+    }
+
+    @Test
+    void testSave_Deduplicates() throws Exception {
+        FileSystemDocumentStore store = new FileSystemDocumentStore(root.toString());
+
+        StoredDocument first = store.save(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        StoredDocument second = store.save(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+
+        assertEquals(first.getHash(), second.getHash());
+        try (Stream<Path> files = Files.list(root.resolve(first.getHash().substring(0, 2)))) {
+            assertEquals(1, files.count());
+        }
+        // No quedan archivos temporales
+        try (Stream<Path> files = Files.list(root.resolve("tmp"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testCopy_Range() throws Exception {
+        FileSystemDocumentStore store = new FileSystemDocumentStore(root.toString());
+        StoredDocument document = store.save(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5}));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        store.copy(document.getHash(), 1, 3, output);
+
+        assertArrayEquals(new byte[]{2, 3, 4}, output.toByteArray());
+    }
+
+    @Test
+    void testCopy_UnknownDocument() {
+        FileSystemDocumentStore store = new FileSystemDocumentStore(root.toString());
+
+        assertThrows(FileNotFoundException.class, () -> store.copy("0".repeat(64), 0, 1, new ByteArrayOutputStream()));
+        assertFalse(store.exists("../../etc/passwd"));
+    }
+}
@@ -0,0 +1,116 @@
+package backend.backend.TestService;
+
+import backend.backend.Entity.HistoryCountEntity;
+import backend.backend.Repository.ClientSavingsRepository;
+import backend.backend.Repository.HistoryCountRepository;
+import backend.backend.Service.HistoryCountIngestService;
+import backend.backend.Service.IngestReport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.StringReader;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class HistoryCountIngestServiceTest {
+
+    @Mock
+    private HistoryCountRepository historyCountRepository;
+
+    @Mock
+    private ClientSavingsRepository clientSavingsRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private HistoryCountIngestService historyCountIngestService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(historyCountIngestService, "batchSize", 2);
+        // Ejecuta los batches sin base de datos
+        doAnswer(invocation -> {
+            invocation.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    void testIngestNdjson() throws Exception {
+        String input = """
+                {"clientid": 1, "change": 1000, "changeDate": "2024-05-01T10:00:00"}
+                {"clientid": 1, "change": -200, "changeDate": "2024-05-02 11:30:00"}
+                not json
+
+                {"clientid": 2, "change": 500, "changeDate": "2024-05-03"}
+                {"clientid": 2, "change": 500}
+                """;
+
+        IngestReport report = historyCountIngestService.ingest(new StringReader(input), HistoryCountIngestService.Format.NDJSON);
+
+        assertEquals(6, report.getLines());
+        assertEquals(3, report.getInserted());
+        assertEquals(2, report.getFailed());
+        assertEquals(List.of(3L, 6L), report.getErrors().stream().map(IngestReport.LineError::getLine).toList());
+        // Un batch de 2 filas y otro de 1, los agregados se actualizan una vez por cliente y batch
+        verify(historyCountRepository, times(2)).saveAll(anyList());
+        verify(clientSavingsRepository).applyMovements(1L, 800, 2, Timestamp.valueOf(LocalDateTime.of(2024, 5, 2, 11, 30)));
+        verify(clientSavingsRepository).applyMovements(2L, 500, 1, Timestamp.valueOf(LocalDateTime.of(2024, 5, 3, 0, 0)));
+        verify(entityManager, times(2)).clear();
+    }
+
+    @Test
+    void testIngestCsv() throws Exception {
+        String input = "clientid,change,changeDate\n3,100,1714557600000\n3,abc,2024-05-01\n";
+        List<HistoryCountEntity> saved = new ArrayList<>();
+        when(historyCountRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            saved.addAll(invocation.getArgument(0));
+            return saved;
+        });
+
+        IngestReport report = historyCountIngestService.ingest(new StringReader(input), HistoryCountIngestService.Format.CSV);
+
+        assertEquals(1, report.getInserted());
+        assertEquals(1, report.getFailed());
+        assertEquals(3L, report.getErrors().get(0).getLine());
+        assertEquals(new Timestamp(1714557600000L), saved.get(0).getChangeDate());
+    }
+
+    @Test
+    void testIngest_FailedBatchReportsItsLines() throws Exception {
+        when(historyCountRepository.saveAll(anyList()))
+                .thenThrow(new DataIntegrityViolationException("duplicate"))
+                .thenReturn(List.of());
+        String input = "1,10,2024-05-01\n1,20,2024-05-01\n1,30,2024-05-01\n";
+
+        IngestReport report = historyCountIngestService.ingest(new StringReader(input), HistoryCountIngestService.Format.CSV);
+
+        assertEquals(1, report.getInserted());
+        assertEquals(2, report.getFailed());
+        assertEquals(List.of(1L, 2L), report.getErrors().stream().map(IngestReport.LineError::getLine).toList());
+    }
+}
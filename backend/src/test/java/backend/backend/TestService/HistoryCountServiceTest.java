@@ -3,14 +3,29 @@ package backend.backend.TestService;
 import backend.backend.Entity.ClientEntity;
 import backend.backend.Entity.HistoryCountEntity;
 import backend.backend.Repository.ClientRepository;
+import backend.backend.Repository.ClientSavingsRepository;
 import backend.backend.Repository.HistoryCountRepository;
+import backend.backend.Repository.HistorySnapshotRepository;
+import backend.backend.Repository.SavingsSummary;
+import backend.backend.Service.ClientCache;
+import backend.backend.Service.EvaluationContext;
+import backend.backend.Service.EvaluationTrace;
 import backend.backend.Service.HistoryCountService;
+import backend.backend.Service.HistorySnapshot;
+import backend.backend.Service.RuleMetrics;
+import backend.backend.Service.SavingsSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDate;
 import java.time.ZoneId;
@@ -27,12 +42,22 @@ public class HistoryCountServiceTest {
     @Mock
     private ClientRepository clientRepository;
 
+    @Mock
+    private ClientSavingsRepository clientSavingsRepository;
+
+    @Mock
+    private HistorySnapshotRepository historySnapshotRepository;
+
+    @Spy
+    private RuleMetrics ruleMetrics = new RuleMetrics(new SimpleMeterRegistry());
+
     @InjectMocks
     private HistoryCountService historyCountService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(historyCountService, "clientCache", new ClientCache(clientRepository, 100, 60));
     }
 
 
@@ -44,6 +69,11 @@ public class HistoryCountServiceTest {
         return entity;
     }
 
+    private void givenBalance(long clientId, long balance) {
+        when(clientSavingsRepository.findSummaryById(clientId))
+                .thenReturn(Optional.of(new SavingsSummary(clientId, balance, 1)));
+    }
+
 
     // Tests para addHistoryCount
     @Test
@@ -54,6 +84,52 @@ public class HistoryCountServiceTest {
         assertEquals(historyCount, result);
     }
 
+    @Test
+    void testAddHistoryCount_UpdatesSavings() {
+        HistoryCountEntity historyCount = createHistoryCountEntity(-300, LocalDate.now());
+        historyCount.setClientid(5L);
+        when(historyCountRepository.save(historyCount)).thenReturn(historyCount);
+
+        historyCountService.addHistoryCount(historyCount);
+
+        verify(clientSavingsRepository).applyMovements(5L, -300, 1, historyCount.getChangeDate());
+    }
+
+    @Test
+    void testGetHistoryVersion() {
+        givenBalance(6L, 100);
+        when(clientSavingsRepository.findSummaryById(7L)).thenReturn(Optional.empty());
+        assertEquals(1L, historyCountService.getHistoryVersion(6L));
+        assertEquals(0L, historyCountService.getHistoryVersion(7L));
+    }
+
+    @Test
+    void testRebuildSavings() {
+        when(clientSavingsRepository.insertAllSavingsFromHistory()).thenReturn(4);
+        assertEquals(4, historyCountService.rebuildSavings());
+        // El bloqueo se toma antes de borrar, un movimiento concurrente espera al final del rebuild
+        InOrder order = inOrder(clientSavingsRepository);
+        order.verify(clientSavingsRepository).lockSavings();
+        order.verify(clientSavingsRepository).deleteAllSavings();
+        order.verify(clientSavingsRepository).insertAllSavingsFromHistory();
+    }
+
+    @Test
+    void testRebuildSavings_OneClient() {
+        historyCountService.rebuildSavings(5L);
+        InOrder order = inOrder(clientSavingsRepository);
+        order.verify(clientSavingsRepository).lockSavings();
+        order.verify(clientSavingsRepository).deleteSavings(5L);
+        order.verify(clientSavingsRepository).insertSavingsFromHistory(5L);
+    }
+
+    @Test
+    void testGetBalance_WithoutSavingsSumsHistory() {
+        when(clientSavingsRepository.findSummaryById(9L)).thenReturn(Optional.empty());
+        when(historyCountRepository.sumChangeByClientid(9L)).thenReturn(700L);
+        assertEquals(700, historyCountService.getBalance(9L));
+    }
+
     @Test
     void testAddHistoryCount_NullInput() {
         assertThrows(IllegalArgumentException.class, () -> historyCountService.addHistoryCount(null));
@@ -64,6 +140,7 @@ public class HistoryCountServiceTest {
         HistoryCountEntity historyCount = new HistoryCountEntity();
         when(historyCountRepository.save(historyCount)).thenThrow(new RuntimeException("Save failed"));
         assertThrows(RuntimeException.class, () -> historyCountService.addHistoryCount(historyCount));
+        verifyNoInteractions(clientSavingsRepository);
     }
 
     // Tests para getHistoryCount
@@ -94,21 +171,17 @@ public class HistoryCountServiceTest {
     void testR71_ConditionTrue() {
         Long clientId = 1L;
         int amount = 1000;
-        HistoryCountEntity h1 = new HistoryCountEntity();
-        h1.setChange(100);
-        HistoryCountEntity h2 = new HistoryCountEntity();
-        h2.setChange(50);
-        when(historyCountRepository.findAllByClientid(clientId)).thenReturn(Arrays.asList(h1, h2));
+        givenBalance(clientId, 150);
         assertTrue(historyCountService.R71(clientId, amount));
+        // El saldo sale de los agregados, el historial no se lee
+        verifyNoInteractions(historySnapshotRepository);
     }
 
     @Test
     void testR71_ConditionFalse() {
         Long clientId = 1L;
         int amount = 1000;
-        HistoryCountEntity h1 = new HistoryCountEntity();
-        h1.setChange(20);
-        when(historyCountRepository.findAllByClientid(clientId)).thenReturn(List.of(h1));
+        givenBalance(clientId, 20);
         assertFalse(historyCountService.R71(clientId, amount));
     }
 
@@ -116,7 +189,7 @@ public class HistoryCountServiceTest {
     void testR71_EmptyHistory() {
         Long clientId = 1L;
         int amount = 1000;
-        when(historyCountRepository.findAllByClientid(clientId)).thenReturn(List.of());
+        when(clientSavingsRepository.findSummaryById(clientId)).thenReturn(Optional.empty());
         assertFalse(historyCountService.R71(clientId, amount));
     }
 
@@ -124,7 +197,8 @@ public class HistoryCountServiceTest {
     @Test
     void testR72_NoTransactions() {
         Long clientId = 1L;
-        when(historyCountRepository.findAllByClientid(clientId)).thenReturn(List.of());
+        givenBalance(clientId, 0);
+        when(historySnapshotRepository.findByClientidSince(eq(clientId), any())).thenReturn(HistorySnapshot.of(List.of()));
         assertTrue(historyCountService.R72(clientId));  // No transactions should result in true
     }
 
@@ -138,7 +212,8 @@ public class HistoryCountServiceTest {
 
         // Cliente sin historial de transacciones
         when(clientRepository.findById(clientId)).thenReturn(Optional.of(client)); // Devuelve un Optional
-        when(historyCountRepository.findAllByClientid(clientId)).thenReturn(Collections.emptyList());
+        givenBalance(clientId, 0);
+        when(historySnapshotRepository.findByClientidSince(eq(clientId), any())).thenReturn(HistorySnapshot.of(Collections.emptyList()));
 
         // Aquí se llama al método que estás probando, usando la instancia real
         boolean result = historyCountService.R73(clientId);
@@ -160,7 +235,8 @@ public class HistoryCountServiceTest {
         h1.setChangeDate(java.sql.Timestamp.valueOf(LocalDate.now().minusMonths(2).atStartOfDay()));
 
         when(clientRepository.findById(clientId)).thenReturn(Optional.of(client)); // Devuelve un Optional
-        when(historyCountRepository.findAllByClientid(clientId)).thenReturn(List.of(h1));
+        givenBalance(clientId, 100);
+        when(historySnapshotRepository.findByClientidSince(eq(clientId), any())).thenReturn(HistorySnapshot.of(List.of(h1)));
 
         // Simula la ausencia de depósitos trimestrales
         HistoryCountService historyCountServiceMock = Mockito.mock(HistoryCountService.class);
@@ -180,10 +256,7 @@ public class HistoryCountServiceTest {
         int older = 3;
         int amount = 1000;
 
-        List<HistoryCountEntity> historyCounts = new ArrayList<>();
-        historyCounts.add(createHistoryCountEntity(200, LocalDate.now().minusMonths(1))); // suma total 200
-
-        when(historyCountRepository.findAllByClientid(clientId)).thenReturn(historyCounts);
+        givenBalance(clientId, 200);
 
         assertTrue(historyCountService.R74(clientId, older, amount));
     }
@@ -194,10 +267,7 @@ public class HistoryCountServiceTest {
         int older = 1;
         int amount = 1000;
 
-        List<HistoryCountEntity> historyCounts = new ArrayList<>();
-        historyCounts.add(createHistoryCountEntity(250, LocalDate.now().minusMonths(2))); // suma total 250
-
-        when(historyCountRepository.findAllByClientid(clientId)).thenReturn(historyCounts);
+        givenBalance(clientId, 250);
 
         assertTrue(historyCountService.R74(clientId, older, amount));
     }
@@ -208,10 +278,7 @@ public class HistoryCountServiceTest {
         int older = 3;
         int amount = 5000;
 
-        List<HistoryCountEntity> historyCounts = new ArrayList<>();
-        historyCounts.add(createHistoryCountEntity(200, LocalDate.now().minusMonths(3))); // suma total insuficiente
-
-        when(historyCountRepository.findAllByClientid(clientId)).thenReturn(historyCounts);
+        givenBalance(clientId, 200);
 
         assertFalse(historyCountService.R74(clientId, older, amount));
     }
@@ -223,7 +290,8 @@ public class HistoryCountServiceTest {
         historyCounts.add(createHistoryCountEntity(100, LocalDate.now().minusMonths(7))); // fuera de los 6 meses
         historyCounts.add(createHistoryCountEntity(-20, LocalDate.now().minusMonths(2))); // retiro menor al 30%
 
-        when(historyCountRepository.findAllByClientid(clientId)).thenReturn(historyCounts);
+        givenBalance(clientId, 80);
+        when(historySnapshotRepository.findByClientidSince(eq(clientId), any())).thenReturn(HistorySnapshot.of(historyCounts));
 
         assertTrue(historyCountService.R75(clientId));
     }
@@ -235,7 +303,8 @@ public class HistoryCountServiceTest {
         List<HistoryCountEntity> historyCounts = new ArrayList<>();
         historyCounts.add(createHistoryCountEntity(-50, LocalDate.now().minusMonths(3))); // retiro mayor al 30%
 
-        when(historyCountRepository.findAllByClientid(clientId)).thenReturn(historyCounts);
+        givenBalance(clientId, -50);
+        when(historySnapshotRepository.findByClientidSince(eq(clientId), any())).thenReturn(HistorySnapshot.of(historyCounts));
 
         assertFalse(historyCountService.R75(clientId));
     }
@@ -247,9 +316,136 @@ public class HistoryCountServiceTest {
         List<HistoryCountEntity> historyCounts = new ArrayList<>();
         historyCounts.add(createHistoryCountEntity(100, LocalDate.now().minusMonths(7))); // fuera de los 6 meses
 
-        when(historyCountRepository.findAllByClientid(clientId)).thenReturn(historyCounts);
+        givenBalance(clientId, 100);
+        when(historySnapshotRepository.findByClientidSince(eq(clientId), any())).thenReturn(HistorySnapshot.of(historyCounts));
 
         assertTrue(historyCountService.R75(clientId));
     }
 
+    @Test
+    public void testR7Complete_LoadsOnlyRecentHistory() {
+        long clientId = 1L;
+        ClientEntity client = new ClientEntity();
+        client.setSalary(10000);
+
+        List<HistoryCountEntity> last12Months = new ArrayList<>();
+        last12Months.add(createHistoryCountEntity(1000, LocalDate.now().minusMonths(3)));
+        last12Months.add(createHistoryCountEntity(1000, LocalDate.now().minusMonths(2)));
+        last12Months.add(createHistoryCountEntity(1000, LocalDate.now().minusMonths(1)));
+
+        givenBalance(clientId, 3000);
+        when(historySnapshotRepository.findByClientidSince(eq(clientId), any())).thenReturn(HistorySnapshot.of(last12Months));
+        when(clientRepository.findById(clientId)).thenReturn(client);
+
+        assertTrue(historyCountService.R7Complete(clientId, 3, 1000));
+        // El saldo sale de los agregados y solo se leen los movimientos de los últimos 12 meses
+        verify(historyCountRepository, never()).sumChangeByClientid(clientId);
+        verify(historySnapshotRepository, times(1)).findByClientidSince(clientId, HistoryCountService.windowStart(12));
+        verifyNoMoreInteractions(historySnapshotRepository);
+    }
+
+    @Test
+    public void testR7Complete_Traced() {
+        long clientId = 1L;
+        ClientEntity client = new ClientEntity();
+        client.setSalary(10000);
+
+        List<HistoryCountEntity> last12Months = new ArrayList<>();
+        last12Months.add(createHistoryCountEntity(1000, LocalDate.now().minusMonths(3)));
+        last12Months.add(createHistoryCountEntity(-100, LocalDate.now().minusMonths(1)));
+
+        givenBalance(clientId, 900);
+        when(historySnapshotRepository.findByClientidSince(eq(clientId), any())).thenReturn(HistorySnapshot.of(last12Months));
+
+        EvaluationTrace trace = new EvaluationTrace();
+        boolean traced = historyCountService.R7Complete(new EvaluationContext(clientId, client, trace), 3, 1000);
+
+        assertEquals(historyCountService.R7Complete(new EvaluationContext(clientId, client), 3, 1000), traced);
+        assertEquals(List.of("savings balance", "history since", "R71", "R72", "R73", "R74", "R75"),
+                trace.getSteps().stream().map(EvaluationTrace.Step::name).toList());
+        assertEquals(2, trace.getSteps().get(1).rows());
+        assertEquals(100, trace.getSteps().get(6).values().get("largestWithdrawal"));
+    }
+
+    @Test
+    public void testWindowStart_MatchesInMemoryFilter() {
+        java.sql.Timestamp start = HistoryCountService.windowStart(6);
+        HistoryCountEntity first = new HistoryCountEntity();
+        first.setChangeDate(start);
+        HistoryCountEntity before = new HistoryCountEntity();
+        before.setChangeDate(new java.sql.Timestamp(start.getTime() - 1));
+
+        List<HistoryCountEntity> filtered = HistoryCountService.filterObjectsLast6Months(List.of(first, before));
+
+        assertEquals(List.of(first), filtered);
+    }
+
+    @Test
+    public void testSavingsSnapshot_WindowsMatchInMemoryFilters() {
+        List<HistoryCountEntity> historyCounts = new ArrayList<>();
+        for (int months = 15; months >= 0; months--) {
+            historyCounts.add(createHistoryCountEntity(months % 3 == 0 ? -months : 100 + months, LocalDate.now().minusMonths(months)));
+        }
+        historyCounts.add(createHistoryCountEntity(50, LocalDate.now().minusMonths(6).plusDays(1)));
+
+        SavingsSnapshot snapshot = SavingsSnapshot.of(historyCounts);
+
+        assertEquals(HistorySnapshot.of(HistoryCountService.filterObjectsLast12Months(historyCounts)).size(), snapshot.getLast12Months().size());
+        List<HistoryCountEntity> last6Months = HistoryCountService.filterObjectsLast6Months(historyCounts);
+        assertEquals(last6Months.size(), snapshot.getLast6Months().size());
+        for (int i = 0; i < last6Months.size(); i++) {
+            assertEquals(last6Months.get(i).getChange(), snapshot.getLast6Months().change(i));
+            assertEquals(last6Months.get(i).getChangeDate().getTime(), snapshot.getLast6Months().epochMillis(i));
+        }
+    }
+
+    @Test
+    public void testGetSavingsSnapshots_ClientWithoutMovements() {
+        List<HistoryCountEntity> recent = List.of(createHistoryCountEntity(400, LocalDate.now().minusMonths(1)));
+        givenBalance(1L, 400);
+        when(clientSavingsRepository.findSummariesByClientidIn(anyCollection())).thenReturn(List.of(new SavingsSummary(1L, 400, 1)));
+        when(historyCountRepository.sumChangeByClientidIn(List.of(2L))).thenReturn(List.of());
+        when(historySnapshotRepository.findByClientidInSince(anyCollection(), any())).thenReturn(Map.of(1L, HistorySnapshot.of(recent)));
+
+        Map<Long, SavingsSnapshot> snapshots = historyCountService.getSavingsSnapshots(List.of(1L, 2L));
+
+        assertEquals(400, snapshots.get(1L).getTotal());
+        assertEquals(1, snapshots.get(1L).getLast12Months().size());
+        assertEquals(0, snapshots.get(2L).getTotal());
+        assertTrue(snapshots.get(2L).getLast12Months().isEmpty());
+    }
+
+    @Test
+    public void testGetHistoryPage() {
+        long clientId = 1L;
+        java.sql.Timestamp beforeDate = java.sql.Timestamp.valueOf(LocalDate.now().atStartOfDay());
+        List<HistoryCountEntity> page = List.of(createHistoryCountEntity(100, LocalDate.now().minusDays(1)));
+        when(historyCountRepository.findFirstPageByClientid(eq(clientId), any(Pageable.class))).thenReturn(page);
+        when(historyCountRepository.findPageByClientidBefore(eq(clientId), eq(beforeDate), eq(7L), any(Pageable.class))).thenReturn(List.of());
+
+        assertEquals(page, historyCountService.getHistoryPage(clientId, null, 0, 20));
+        assertTrue(historyCountService.getHistoryPage(clientId, beforeDate, 7L, 20).isEmpty());
+        verifyNoInteractions(historySnapshotRepository);
+    }
+
+    @Test
+    public void testGetHistoryPage_AfterUndatedMovement() {
+        long clientId = 1L;
+        List<HistoryCountEntity> page = List.of(createHistoryCountEntity(100, LocalDate.now().minusDays(1)));
+        when(historyCountRepository.findPageByClientidBeforeUndated(eq(clientId), eq(7L), any(Pageable.class))).thenReturn(page);
+
+        // Sin fecha pero con id, el cursor quedó en un movimiento sin fecha
+        assertEquals(page, historyCountService.getHistoryPage(clientId, null, 7L, 0));
+        verify(historyCountRepository).findPageByClientidBeforeUndated(clientId, 7L, PageRequest.of(0, HistoryCountService.DEFAULT_PAGE_SIZE));
+        verify(historyCountRepository, never()).findFirstPageByClientid(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    public void testPageSize() {
+        assertEquals(HistoryCountService.DEFAULT_PAGE_SIZE, HistoryCountService.pageSize(0));
+        assertEquals(HistoryCountService.DEFAULT_PAGE_SIZE, HistoryCountService.pageSize(-5));
+        assertEquals(20, HistoryCountService.pageSize(20));
+        assertEquals(HistoryCountService.MAX_PAGE_SIZE, HistoryCountService.pageSize(100000));
+    }
+
 }
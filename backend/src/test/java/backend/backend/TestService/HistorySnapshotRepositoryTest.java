@@ -0,0 +1,70 @@
+package backend.backend.TestService;
+
+import backend.backend.Repository.HistorySnapshotRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class HistorySnapshotRepositoryTest {
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private HistorySnapshotRepository historySnapshotRepository;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private Timer invocations(String method, String state, String exception) {
+        return meterRegistry.find("spring.data.repository.invocations")
+                .tags("repository", "HistorySnapshotRepository", "method", method, "state", state, "exception", exception)
+                .timer();
+    }
+
+    // Each query is recorded with the same meter and tags as the Spring Data repositories
+    @Test
+    public void testQueriesAreTimed() {
+        Timestamp since = Timestamp.valueOf("2026-01-01 00:00:00");
+
+        assertEquals(0, historySnapshotRepository.findByClientidSince(1L, since).size());
+        assertTrue(historySnapshotRepository.findByClientidInSince(List.of(1L, 2L), since).isEmpty());
+
+        assertEquals(1, invocations("findByClientidSince", "SUCCESS", "None").count());
+        assertEquals(1, invocations("findByClientidInSince", "SUCCESS", "None").count());
+    }
+
+    @Test
+    public void testFailedQueryIsTimedAsError() {
+        doThrow(new QueryTimeoutException("timeout")).when(jdbcTemplate)
+                .query(anyString(), any(SqlParameterSource.class), any(RowCallbackHandler.class));
+
+        assertThrows(QueryTimeoutException.class,
+                () -> historySnapshotRepository.findByClientidSince(1L, Timestamp.valueOf("2026-01-01 00:00:00")));
+
+        assertEquals(1, invocations("findByClientidSince", "ERROR", "QueryTimeoutException").count());
+        assertNull(invocations("findByClientidSince", "SUCCESS", "None"));
+    }
+}
@@ -0,0 +1,74 @@
+package backend.backend.TestService;
+
+import backend.backend.Entity.HistoryCountEntity;
+import backend.backend.Service.QuarterCoverage;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QuarterCoverageTest {
+
+    private HistoryCountEntity movement(int change, LocalDateTime date) {
+        HistoryCountEntity historyCount = new HistoryCountEntity();
+        historyCount.setChange(change);
+        historyCount.setChangeDate(Timestamp.valueOf(date));
+        return historyCount;
+    }
+
+    @Test
+    void testMask_MatchesLocalDateQuarter() {
+        // Cada día entre 1900 y 2100, incluidos los años bisiestos y los cambios de siglo
+        for (long day = LocalDate.of(1900, 1, 1).toEpochDay(); day <= LocalDate.of(2100, 12, 31).toEpochDay(); day += 7) {
+            LocalDate date = LocalDate.ofEpochDay(day);
+            QuarterCoverage coverage = new QuarterCoverage();
+            coverage.addDeposit(day);
+            assertEquals(1 << (date.getMonthValue() - 1) / 3, coverage.mask(date.getYear()), date.toString());
+        }
+    }
+
+    @Test
+    void testEpochDay_UsesSystemZone() {
+        LocalDateTime lateNight = LocalDateTime.of(2024, 3, 31, 23, 59);
+        assertEquals(LocalDate.of(2024, 3, 31).toEpochDay(),
+                QuarterCoverage.epochDay(Timestamp.valueOf(lateNight), ZoneId.systemDefault().getRules()));
+    }
+
+    @Test
+    void testOf_OnlyDepositsCount() {
+        QuarterCoverage coverage = QuarterCoverage.of(List.of(
+                movement(100, LocalDateTime.of(2024, 2, 10, 12, 0)),
+                movement(-50, LocalDateTime.of(2024, 5, 10, 12, 0)),
+                movement(0, LocalDateTime.of(2024, 8, 10, 12, 0)),
+                movement(30, LocalDateTime.of(2023, 11, 3, 9, 0))));
+
+        assertEquals(0b0001, coverage.mask(2024));
+        assertEquals(0b1000, coverage.mask(2023));
+        assertEquals(0, coverage.mask(2022));
+        assertTrue(coverage.everyYearHasDeposits());
+    }
+
+    @Test
+    void testEveryYearHasDeposits_EmptyHistory() {
+        // Igual que hasQuarterlyDeposits, un historial sin depósitos no se rechaza
+        assertTrue(QuarterCoverage.of(List.of()).everyYearHasDeposits());
+        assertTrue(QuarterCoverage.of(List.of(movement(-10, LocalDateTime.of(2024, 1, 1, 0, 0)))).everyYearHasDeposits());
+    }
+
+    @Test
+    void testMissingQuarters() {
+        QuarterCoverage coverage = QuarterCoverage.of(List.of(
+                movement(100, LocalDateTime.of(2024, 1, 15, 12, 0)),
+                movement(100, LocalDateTime.of(2024, 12, 1, 12, 0)),
+                movement(100, LocalDateTime.of(2025, 4, 1, 12, 0))));
+
+        assertEquals(List.of("2023-Q4", "2024-Q2", "2024-Q3", "2025-Q1", "2025-Q3"),
+                coverage.missingQuarters(LocalDate.of(2023, 10, 20), LocalDate.of(2025, 9, 30)));
+        assertEquals(List.of(), coverage.missingQuarters(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 31)));
+    }
+}
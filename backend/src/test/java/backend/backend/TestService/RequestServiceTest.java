@@ -3,14 +3,29 @@ package backend.backend.TestService;
 
 import backend.backend.Entity.RequestEntity;
 import backend.backend.Repository.RequestRepository;
+import backend.backend.Repository.RequestSummary;
+import backend.backend.Service.DocumentStore;
 import backend.backend.Service.RequestService;
+import backend.backend.Service.StoredDocument;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.OptimisticLockException;
+import org.hibernate.engine.jdbc.BlobProxy;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-
+import org.mockito.Spy;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -23,12 +38,25 @@ public class RequestServiceTest {
     @Mock
     private RequestRepository requestRepository;
 
+    @Mock
+    private DocumentStore documentStore;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private RequestService requestService;
 
     @BeforeEach
-    void setUp() {
+    void setUp() throws Exception {
         MockitoAnnotations.openMocks(this);
+        // Ejecuta los callbacks transaccionales sin base de datos
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(documentStore.save(any(InputStream.class))).thenReturn(new StoredDocument("a".repeat(64), 3));
     }
 
     @Test
@@ -46,7 +74,7 @@ public class RequestServiceTest {
         request.setClientId(clientId);
         request.setAmount(amount);
         request.setYearTerm(termYears);
-        request.setPdfDocument(pdfDocument);
+        request.setDocumentHash("a".repeat(64));
 
         when(requestRepository.save(any(RequestEntity.class))).thenReturn(request);
 
@@ -61,16 +89,15 @@ public class RequestServiceTest {
     void testUpdateStage_Success() {
         long requestId = 1L;
         int newStage = 2;
-        RequestEntity request = new RequestEntity();
-        request.setId(requestId);
-        request.setStage(1);
 
-        when(requestRepository.findById(requestId)).thenReturn(Optional.of(request));
+        when(requestRepository.updateStage(requestId, newStage)).thenReturn(1);
 
         requestService.updateStage(requestId, newStage);
 
-        assertEquals(newStage, request.getStage());
-        verify(requestRepository, times(1)).save(request);
+        verify(requestRepository, times(1)).updateStage(requestId, newStage);
+        // No se lee la solicitud ni se guarda la entidad completa
+        verify(requestRepository, never()).findById(anyLong());
+        verify(requestRepository, never()).save(any());
     }
 
     @Test
@@ -78,7 +105,7 @@ public class RequestServiceTest {
         long requestId = 1L;
         int newStage = 2;
 
-        when(requestRepository.findById(requestId)).thenReturn(Optional.empty());
+        when(requestRepository.updateStage(requestId, newStage)).thenReturn(0);
 
         Exception exception = assertThrows(EntityNotFoundException.class, () -> {
             requestService.updateStage(requestId, newStage);
@@ -88,6 +115,36 @@ public class RequestServiceTest {
         verify(requestRepository, never()).save(any());
     }
 
+    @Test
+    void testUpdateStage_VersionConflict() {
+        long requestId = 1L;
+
+        when(requestRepository.updateStageIfVersion(requestId, 2, 5)).thenReturn(0);
+        when(requestRepository.existsById(requestId)).thenReturn(true);
+
+        assertThrows(OptimisticLockException.class, () -> requestService.updateStage(requestId, 2, 5));
+    }
+
+    @Test
+    void testUpdateStage_VersionRequestNotFound() {
+        long requestId = 1L;
+
+        when(requestRepository.updateStageIfVersion(requestId, 2, 5)).thenReturn(0);
+        when(requestRepository.existsById(requestId)).thenReturn(false);
+
+        assertThrows(EntityNotFoundException.class, () -> requestService.updateStage(requestId, 2, 5));
+    }
+
+    @Test
+    void testUpdateStage_Bulk() {
+        List<Long> requestIds = List.of(1L, 2L, 3L);
+        when(requestRepository.updateStageBulk(requestIds, 4)).thenReturn(2);
+
+        assertEquals(2, requestService.updateStage(requestIds, 4));
+        assertEquals(0, requestService.updateStage(List.of(), 4));
+        verify(requestRepository, times(1)).updateStageBulk(anyCollection(), anyInt());
+    }
+
     @Test
     void testGetRequestById_Success() {
         long requestId = 1L;
@@ -156,4 +213,95 @@ public class RequestServiceTest {
         assertTrue(allRequests.isEmpty());
         verify(requestRepository, times(1)).findAll();
     }
+
+    @Test
+    void testGetRequestSummaries_DoNotLoadEntities() {
+        List<RequestSummary> summaries = List.of(new RequestSummary(1L, "Loan", 1, 5000, 5, 12345L, 3L, 0));
+        when(requestRepository.findSummariesAfter(eq(0L), any(Pageable.class))).thenReturn(summaries);
+
+        List<RequestSummary> result = requestService.getRequestSummaries(0, 50);
+
+        assertEquals(summaries, result);
+        verify(requestRepository, never()).findAll();
+    }
+
+    @Test
+    void testGetRequestSummaries_PageSizeIsBounded() {
+        ArgumentCaptor<Pageable> page = ArgumentCaptor.forClass(Pageable.class);
+        when(requestRepository.findSummariesByClientIdAfter(eq(12345L), eq(10L), page.capture())).thenReturn(List.of());
+
+        requestService.getRequestSummariesByClientId(12345L, 10L, 100000);
+        requestService.getRequestSummariesByClientId(12345L, 10L, 0);
+
+        assertEquals(RequestService.MAX_PAGE_SIZE, page.getAllValues().get(0).getPageSize());
+        assertEquals(RequestService.DEFAULT_PAGE_SIZE, page.getAllValues().get(1).getPageSize());
+    }
+
+    @Test
+    void testCreateRequest_StoresDocumentInStore() throws Exception {
+        byte[] pdfDocument = new byte[]{1, 2, 3};
+        when(requestRepository.save(any(RequestEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        RequestEntity createdRequest = requestService.createRequest("Loan", 1, 5000, 5, 12345L, new ByteArrayInputStream(pdfDocument));
+
+        assertEquals("a".repeat(64), createdRequest.getDocumentHash());
+        assertEquals(3L, createdRequest.getDocumentSize());
+        assertNull(createdRequest.getPdfDocument());
+        verify(documentStore, times(1)).save(any(InputStream.class));
+        assertEquals(3.0, meterRegistry.get("documents.upload.bytes").summary().totalAmount());
+    }
+
+    @Test
+    void testGetPdfDocumentSize_StoredSize() {
+        long requestId = 1L;
+        when(requestRepository.existsById(requestId)).thenReturn(true);
+        when(requestRepository.findDocumentSizeById(requestId)).thenReturn(3L);
+
+        assertEquals(3L, requestService.getPdfDocumentSize(requestId));
+        verify(requestRepository, never()).findPdfDocumentById(requestId);
+    }
+
+    @Test
+    void testGetPdfDocumentSize_NotFound() {
+        long requestId = 1L;
+        when(requestRepository.existsById(requestId)).thenReturn(false);
+
+        assertThrows(EntityNotFoundException.class, () -> requestService.getPdfDocumentSize(requestId));
+    }
+
+    @Test
+    void testWritePdfDocument_FromStore() throws Exception {
+        long requestId = 1L;
+        String hash = "b".repeat(64);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        when(requestRepository.findDocumentHashById(requestId)).thenReturn(hash);
+
+        requestService.writePdfDocument(requestId, 1, 3, output);
+
+        verify(documentStore, times(1)).copy(hash, 1, 3, output);
+        verify(requestRepository, never()).findPdfDocumentById(requestId);
+        assertEquals(3.0, meterRegistry.get("documents.download.bytes").summary().totalAmount());
+    }
+
+    @Test
+    void testWritePdfDocument_LegacyRange() throws Exception {
+        long requestId = 1L;
+        when(requestRepository.findPdfDocumentById(requestId)).thenReturn(BlobProxy.generateProxy(new byte[]{1, 2, 3, 4, 5}));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        requestService.writePdfDocument(requestId, 1, 3, output);
+
+        assertArrayEquals(new byte[]{2, 3, 4}, output.toByteArray());
+    }
+
+    @Test
+    void testMigrateLegacyDocuments() throws Exception {
+        when(requestRepository.findIdsWithLegacyDocument()).thenReturn(List.of(1L, 2L));
+        when(requestRepository.findPdfDocumentById(anyLong())).thenReturn(BlobProxy.generateProxy(new byte[]{1, 2, 3}));
+        when(requestRepository.moveDocumentToStore(anyLong(), anyString(), anyLong())).thenReturn(1);
+
+        assertEquals(2, requestService.migrateLegacyDocuments());
+        verify(requestRepository, times(1)).moveDocumentToStore(1L, "a".repeat(64), 3L);
+        verify(requestRepository, times(1)).moveDocumentToStore(2L, "a".repeat(64), 3L);
+    }
 }
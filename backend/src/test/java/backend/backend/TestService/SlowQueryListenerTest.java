@@ -0,0 +1,126 @@
+package backend.backend.TestService;
+
+import backend.backend.Service.SlowQueryListener;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.StatementType;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class SlowQueryListenerTest {
+
+    private final SlowQueryListener listener = new SlowQueryListener(100, 30, true);
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    private final Logger logger = (Logger) LoggerFactory.getLogger("slow-query");
+
+    @BeforeEach
+    void setUp() {
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        logger.detachAppender(appender);
+    }
+
+    private ExecutionInfo execution(long elapsedMs, Object result) {
+        ExecutionInfo execInfo = new ExecutionInfo();
+        execInfo.setElapsedTime(elapsedMs);
+        execInfo.setStatementType(StatementType.PREPARED);
+        execInfo.setSuccess(true);
+        execInfo.setResult(result);
+        return execInfo;
+    }
+
+    private QueryInfo query(String sql, int... parametersPerExecution) {
+        QueryInfo queryInfo = new QueryInfo(sql);
+        List<List<ParameterSetOperation>> parametersList = new ArrayList<>();
+        for (int parameters : parametersPerExecution) {
+            List<ParameterSetOperation> operations = new ArrayList<>();
+            for (int i = 0; i < parameters; i++) {
+                operations.add(new ParameterSetOperation());
+            }
+            parametersList.add(operations);
+        }
+        queryInfo.setParametersList(parametersList);
+        return queryInfo;
+    }
+
+    private MethodExecutionContext call(ResultSet resultSet, String method, Object result) throws NoSuchMethodException {
+        MethodExecutionContext context = new MethodExecutionContext();
+        context.setTarget(resultSet);
+        context.setMethod(ResultSet.class.getMethod(method));
+        context.setResult(result);
+        return context;
+    }
+
+    private JsonNode lastEntry() throws Exception {
+        return new ObjectMapper().readTree(appender.list.get(appender.list.size() - 1).getFormattedMessage());
+    }
+
+    @Test
+    void testFastQuery_NotLogged() {
+        listener.afterQuery(execution(99, 1), List.of(query("update client set age = ?", 1)));
+        assertTrue(appender.list.isEmpty());
+    }
+
+    @Test
+    void testSlowBatch_LoggedWithRowsAndParameters() throws Exception {
+        ExecutionInfo execInfo = execution(150, new int[]{1, 1, 1});
+        execInfo.setBatch(true);
+        execInfo.setBatchSize(3);
+        listener.afterQuery(execInfo, List.of(query("insert into history_count (clientid, change, change_date) values (?, ?, ?)", 3, 3, 3)));
+
+        JsonNode entry = lastEntry();
+        assertEquals(150, entry.get("elapsedMs").asLong());
+        assertEquals(3, entry.get("rows").asLong());
+        assertEquals(9, entry.get("parameters").asInt());
+        assertEquals(3, entry.get("batchSize").asInt());
+        // El SQL se corta en max-sql-length
+        assertEquals("insert into history_count (cli", entry.get("sql").asText());
+    }
+
+    @Test
+    void testSlowSelect_LoggedWhenResultSetIsClosed() throws Exception {
+        ResultSet resultSet = mock(ResultSet.class);
+        listener.afterQuery(execution(300, resultSet), List.of(query("select * from client where id = ?", 1)));
+        assertTrue(appender.list.isEmpty());
+
+        listener.afterMethod(call(resultSet, "next", true));
+        listener.afterMethod(call(resultSet, "next", true));
+        listener.afterMethod(call(resultSet, "next", false));
+        listener.afterMethod(call(resultSet, "close", null));
+
+        JsonNode entry = lastEntry();
+        assertEquals(2, entry.get("rows").asLong());
+        assertEquals(1, entry.get("parameters").asInt());
+        assertEquals(1, appender.list.size());
+    }
+
+    @Test
+    void testSlowSelect_WithoutRowCountLoggedAtOnce() throws Exception {
+        new SlowQueryListener(100, 2000, false)
+                .afterQuery(execution(300, mock(ResultSet.class)), List.of(query("select * from client where id = ?", 1)));
+
+        JsonNode entry = lastEntry();
+        assertTrue(entry.get("rows").isNull());
+        assertEquals("select * from client where id = ?", entry.get("sql").asText());
+    }
+}
@@ -0,0 +1,47 @@
+package backend.benchmarks;
+
+import backend.backend.Service.ClientService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+
+public class AmortizationBenchmark {
+    // P1 and P6 for the usual mortgage terms
+
+    @Param({"5", "20", "30"})
+    public int termYears;
+
+    private ClientService clientService;
+
+    @Setup
+    public void setUp() {
+        clientService = Fixtures.clientService();
+    }
+
+    @Benchmark
+    public int simulateLoanAmount() {
+        return clientService.simulateLoanAmount(100_000_000, termYears, 0.045);
+    }
+
+    @Benchmark
+    public int totalCostP6() {
+        return clientService.totalCostP6(100_000_000, termYears, 0.045, 0.0003, 20_000, 0.01);
+    }
+}
@@ -0,0 +1,110 @@
+package backend.benchmarks;
+
+import backend.backend.Entity.ClientEntity;
+import backend.backend.Entity.HistoryCountEntity;
+import backend.backend.Repository.ClientRepository;
+import backend.backend.Repository.ClientSavingsRepository;
+import backend.backend.Repository.HistoryCountRepository;
+import backend.backend.Repository.HistorySnapshotRepository;
+import backend.backend.Repository.SavingsSummary;
+import backend.backend.Service.AmortizationCalculator;
+import backend.backend.Service.ClientCache;
+import backend.backend.Service.ClientService;
+import backend.backend.Service.HistoryCountService;
+import backend.backend.Service.HistorySnapshot;
+import backend.backend.Service.RuleMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.lang.reflect.Field;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+final class Fixtures {
+    // Services of the backend wired by hand with stubbed repositories, so the benchmarks measure only the Java code
+
+    static final long CLIENT_ID = 1L;
+
+    private Fixtures() {
+    }
+
+    /**
+     * Synthetic savings history: mostly deposits with some small withdrawals, spread over the last 11 months
+     * so every movement falls inside the R7 windows. Always the same for a given size.
+     */
+    static List<HistoryCountEntity> history(int size) {
+        Random random = new Random(size);
+        LocalDateTime now = LocalDateTime.now();
+        long spanSeconds = 11L * 30 * 24 * 3600;
+        List<HistoryCountEntity> history = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            HistoryCountEntity movement = new HistoryCountEntity();
+            movement.setId(i + 1);
+            movement.setClientid(CLIENT_ID);
+            int change = 1000 + random.nextInt(50_000);
+            movement.setChange(random.nextInt(10) == 0 ? -change / 10 : change);
+            movement.setChangeDate(Timestamp.valueOf(now.minusSeconds(spanSeconds * (size - i) / (size + 1))));
+            history.add(movement);
+        }
+        return history;
+    }
+
+    static ClientEntity client() {
+        ClientEntity client = new ClientEntity("12.345.678-9", "password", "client@mail.com", "Ana", "Perez", 40, 1_500_000, 5, false);
+        client.setId(CLIENT_ID);
+        return client;
+    }
+
+    // HistoryCountService whose repositories answer with the given history, as the windowed queries would
+    static HistoryCountService historyCountService(List<HistoryCountEntity> history, ClientEntity client) {
+        long balance = history.stream().mapToLong(HistoryCountEntity::getChange).sum();
+
+        HistoryCountRepository historyCountRepository = mock(HistoryCountRepository.class);
+        when(historyCountRepository.sumChangeByClientid(CLIENT_ID)).thenReturn(balance);
+
+        HistorySnapshot columns = HistorySnapshot.of(history);
+        HistorySnapshotRepository historySnapshotRepository = mock(HistorySnapshotRepository.class);
+        when(historySnapshotRepository.findByClientidSince(eq(CLIENT_ID), any(Timestamp.class))).thenReturn(columns);
+
+        ClientSavingsRepository clientSavingsRepository = mock(ClientSavingsRepository.class);
+        when(clientSavingsRepository.findSummaryById(anyLong())).thenReturn(Optional.of(
+                new SavingsSummary(CLIENT_ID, balance, history.size())));
+
+        ClientRepository clientRepository = mock(ClientRepository.class);
+        when(clientRepository.findById(CLIENT_ID)).thenReturn(client);
+
+        HistoryCountService service = new HistoryCountService();
+        inject(service, "historyCountRepository", historyCountRepository);
+        inject(service, "clientSavingsRepository", clientSavingsRepository);
+        inject(service, "historySnapshotRepository", historySnapshotRepository);
+        inject(service, "clientCache", new ClientCache(clientRepository, 100, 3600));
+        inject(service, "ruleMetrics", new RuleMetrics(new SimpleMeterRegistry()));
+        return service;
+    }
+
+    // ClientService with only the amortization calculator, enough for P1 and P6
+    static ClientService clientService() {
+        ClientService service = new ClientService();
+        inject(service, "amortizationCalculator", new AmortizationCalculator());
+        return service;
+    }
+
+    private static void inject(Object target, String fieldName, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(fieldName);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot set " + fieldName + " of " + target.getClass().getSimpleName(), e);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package backend.benchmarks;
+
+import backend.backend.Entity.ClientEntity;
+import backend.backend.Entity.HistoryCountEntity;
+import backend.backend.Service.HistoryCountService;
+import backend.backend.Service.HistorySnapshot;
+import backend.backend.Service.SavingsSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+
+public class HistoryBenchmark {
+    // R7 and its helpers over savings histories of different sizes
+
+    @Param({"10", "1000", "10000", "100000"})
+    public int size;
+
+    private List<HistoryCountEntity> history;
+    private HistorySnapshot columns;
+    private ClientEntity client;
+    private HistoryCountService historyCountService;
+
+    @Setup
+    public void setUp() {
+        history = Fixtures.history(size);
+        columns = HistorySnapshot.of(history);
+        client = Fixtures.client();
+        historyCountService = Fixtures.historyCountService(history, client);
+    }
+
+    @Benchmark
+    public boolean hasQuarterlyDeposits() {
+        return historyCountService.hasQuarterlyDeposits(history);
+    }
+
+    @Benchmark
+    public List<HistoryCountEntity> filterObjectsLast12Months() {
+        return HistoryCountService.filterObjectsLast12Months(history);
+    }
+
+    // The whole R7 as called by /Client/P4, including the lookups in the stubbed repositories
+    @Benchmark
+    public boolean r7Complete() {
+        return historyCountService.R7Complete(Fixtures.CLIENT_ID, 3, 100_000_000);
+    }
+
+    // R7 over a snapshot of the complete history, without the repositories
+    @Benchmark
+    public boolean r7CompleteFromSnapshot() {
+        return historyCountService.R7Complete(SavingsSnapshot.of(columns), client, 3, 100_000_000);
+    }
+
+    // Copy of the entities into the columnar snapshot, what the JDBC loader saves compared with managed entities
+    @Benchmark
+    public HistorySnapshot historySnapshotOf() {
+        return HistorySnapshot.of(history);
+    }
+}